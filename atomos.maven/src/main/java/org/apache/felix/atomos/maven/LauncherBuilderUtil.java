@@ -36,6 +36,7 @@ import org.apache.felix.atomos.utils.api.FileType;
 import org.apache.felix.atomos.utils.core.plugins.collector.PathCollectorPluginConfig;
 import org.apache.felix.atomos.utils.core.plugins.finaliser.ni.NativeImageBuilderConfig;
 import org.apache.felix.atomos.utils.core.plugins.finaliser.shade.ShadeConfig;
+import org.apache.felix.atomos.utils.core.plugins.index.IndexFormat;
 import org.apache.felix.atomos.utils.core.plugins.index.IndexOutputType;
 import org.apache.felix.atomos.utils.core.plugins.index.IndexPluginConfig;
 import org.apache.maven.project.MavenProject;
@@ -160,6 +161,19 @@ public class LauncherBuilderUtil
             {
                 return indexConfig.indexOutputType;
             }
+
+            @Override
+            public IndexFormat indexFormat()
+            {
+                return Optional.ofNullable(indexConfig.indexFormat).orElse(
+                    IndexFormat.TEXT);
+            }
+
+            @Override
+            public boolean storeEntries()
+            {
+                return indexConfig.storeEntries;
+            }
         };
         return ic;
     }
@@ -269,6 +283,12 @@ public class LauncherBuilderUtil
                     ? shade.shadeOutputDirectory.toPath()
                         : Paths.get(project.getBuild().getDirectory());
             }
+
+            @Override
+            public boolean storeEntries()
+            {
+                return shade.storeEntries;
+            }
         };
         return sc;
 
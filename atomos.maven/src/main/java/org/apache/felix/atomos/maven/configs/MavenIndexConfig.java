@@ -15,6 +15,7 @@ package org.apache.felix.atomos.maven.configs;
 
 import java.io.File;
 
+import org.apache.felix.atomos.utils.core.plugins.index.IndexFormat;
 import org.apache.felix.atomos.utils.core.plugins.index.IndexOutputType;
 import org.apache.maven.plugins.annotations.Parameter;
 
@@ -26,4 +27,10 @@ public class MavenIndexConfig
     @Parameter(required = false, readonly = false)
     public File indexOutputDirectory;
 
+    @Parameter(required = false, readonly = false)
+    public IndexFormat indexFormat;
+
+    @Parameter(required = false, readonly = false)
+    public boolean storeEntries;
+
 }
@@ -22,4 +22,7 @@ public class MavenShadeConfig
     @Parameter(required = false, readonly = false)
     public File shadeOutputDirectory;
 
+    @Parameter(required = false, readonly = false)
+    public boolean storeEntries;
+
 }
@@ -114,6 +114,39 @@ public class ClasspathLaunchTest
             "Found a ModuleLayer.");
     }
 
+    @Test
+    void testLazyStartServices(@TempDir Path storage)
+        throws BundleException, InvalidSyntaxException, InterruptedException
+    {
+        testFramework = Atomos.newAtomos().newFramework(
+            Map.of(Constants.FRAMEWORK_STORAGE, storage.toFile().getAbsolutePath(),
+                Atomos.ATOMOS_CONTENT_START, Atomos.ATOMOS_CONTENT_START_LAZY));
+        testFramework.start();
+        BundleContext bc = testFramework.getBundleContext();
+        assertNotNull(bc, "No context found.");
+
+        Bundle scr = Arrays.stream(bc.getBundles()).filter(
+            (b) -> "org.apache.felix.scr".equals(b.getSymbolicName())).findFirst().orElse(
+                null);
+        assertNotNull(scr, "No SCR bundle found.");
+        assertEquals(Bundle.ACTIVE, scr.getState(), "SCR is not started.");
+
+        // the lookup starts the bundle declaring the service
+        Collection<ServiceReference<Echo>> refs = Collections.emptyList();
+        for (int i = 0; i < 100 && refs.isEmpty(); i++)
+        {
+            refs = bc.getServiceReferences(Echo.class, "(type=impl.component)");
+            if (refs.isEmpty())
+            {
+                Thread.sleep(100);
+            }
+        }
+        assertEquals(1, refs.size(), "No component service found.");
+        Echo echo = bc.getService(refs.iterator().next());
+        assertNotNull(echo, "No Echo service found.");
+        assertEquals("impl.component Hello!!", echo.echo("Hello!!"), "Wrong Echo.");
+    }
+
     private Atomos getRuntime(BundleContext bc)
     {
         ServiceReference<Atomos> ref = bc.getServiceReference(Atomos.class);
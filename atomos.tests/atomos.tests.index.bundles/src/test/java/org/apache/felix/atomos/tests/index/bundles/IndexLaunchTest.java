@@ -23,8 +23,11 @@ import static org.junit.jupiter.api.Assertions.fail;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -41,8 +44,10 @@ import org.apache.felix.atomos.Atomos.HeaderProvider;
 import org.apache.felix.atomos.AtomosContent;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.impl.base.AtomosBase;
+import org.apache.felix.atomos.utils.core.plugins.index.BinaryIndexWriter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.osgi.framework.Bundle;
@@ -54,6 +59,7 @@ import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.Version;
+import org.osgi.framework.connect.ConnectContent.ConnectEntry;
 import org.osgi.framework.launch.Framework;
 import org.osgi.framework.namespace.PackageNamespace;
 import org.osgi.framework.wiring.BundleWiring;
@@ -70,6 +76,16 @@ public class IndexLaunchTest
 
     private Framework testFramework;
 
+    @BeforeAll
+    static void writeBinaryIndex() throws IOException, URISyntaxException
+    {
+        // the binary index is generated from the text index by the current writer
+        Path textIndex = Paths.get(
+            IndexLaunchTest.class.getResource("/testIndex/test.index").toURI());
+        Files.write(textIndex.resolveSibling("test.binary.index"),
+            BinaryIndexWriter.convert(Files.readAllLines(textIndex)));
+    }
+
     @AfterEach
     void afterTest() throws BundleException, InterruptedException, IOException
     {
@@ -141,6 +157,13 @@ public class IndexLaunchTest
         doTestFindBundle(storage, "/testIndex/test.index", List.of(3, 4), List.of(1, 2));
     }
 
+    @Test
+    void testFindBundleBinaryIndex(@TempDir Path storage) throws BundleException
+    {
+        doTestFindBundle(storage, "/testIndex/test.binary.index", List.of(3, 4),
+            List.of(1, 2));
+    }
+
     void doTestFindBundle(@TempDir Path storage, String indexPath,
         Collection<Integer> expected,
         Collection<Integer> unexpected)
@@ -184,6 +207,13 @@ public class IndexLaunchTest
         doTestActivatorService(storage, "testIndex/test.index", 3, 4);
     }
 
+    @Test
+    void testActivatorServiceBinaryIndex(@TempDir Path storage)
+        throws BundleException, InvalidSyntaxException
+    {
+        doTestActivatorService(storage, "testIndex/test.binary.index", 3, 4);
+    }
+
     void doTestActivatorService(@TempDir Path storage, String indexPath,
         int... expected)
         throws BundleException, InvalidSyntaxException
@@ -220,6 +250,13 @@ public class IndexLaunchTest
         doTestGetEntry(storage, "testIndex/test.index", 3, 4);
     }
 
+    @Test
+    void testGetEntryBinaryIndex(@TempDir Path storage)
+        throws BundleException, IOException
+    {
+        doTestGetEntry(storage, "testIndex/test.binary.index", 3, 4);
+    }
+
     void doTestGetEntry(@TempDir Path storage, String indexPath,
         int... expected)
         throws BundleException, IOException
@@ -252,6 +289,14 @@ public class IndexLaunchTest
             assertContent(Integer.toString(i), bundleResource2);
             assertNull(bundle.getEntry("OSGI-INF/notFound.txt"),
                 "Found unexpected resource.");
+
+            ConnectEntry commonEntry = content.getConnectContent().getEntry(
+                "OSGI-INF/common.txt").get();
+            assertEquals(commonEntry.getBytes().length, commonEntry.getContentLength(),
+                "Wrong content length: " + i);
+            assertTrue(commonEntry.getLastModified() > 0, "No last modified: " + i);
+            assertTrue(content.getConnectContent().getEntry(
+                "OSGI-INF/notFound.txt").isEmpty(), "Found unexpected entry.");
         }
     }
 
@@ -269,6 +314,13 @@ public class IndexLaunchTest
         doTestFindEntries(storage, "testIndex/test.index", 3, 4);
     }
 
+    @Test
+    void testFindEntriesBinaryIndex(@TempDir Path storage)
+        throws BundleException, IOException
+    {
+        doTestFindEntries(storage, "testIndex/test.binary.index", 3, 4);
+    }
+
     void doTestFindEntries(@TempDir Path storage, String indexPath,
         int... expected)
         throws BundleException, IOException
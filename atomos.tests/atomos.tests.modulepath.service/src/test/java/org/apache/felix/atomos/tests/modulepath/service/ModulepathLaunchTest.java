@@ -22,14 +22,19 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +45,9 @@ import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 
 import org.apache.felix.atomos.Atomos;
@@ -47,6 +55,7 @@ import org.apache.felix.atomos.Atomos.HeaderProvider;
 import org.apache.felix.atomos.AtomosContent;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.AtomosLayer.LoaderType;
+import org.apache.felix.atomos.AtomosLayer.LookupMissStatistics;
 import org.apache.felix.atomos.tests.testbundles.service.contract.Echo;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -532,6 +541,30 @@ public class ModulepathLaunchTest
         assertNotNull(mf, "No manifest found.");
         mf = b.getEntry("META-INF/MANIFEST.MF");
         assertNotNull(mf, "No manifest found.");
+        assertEntryMetadata(mf);
+
+        final Bundle javaBase = atomos.getBootLayer().findAtomosContent(
+            "java.base").get().getBundle();
+        assertEntryMetadata(javaBase.getEntry("java/lang/Object.class"));
+    }
+
+    private void assertEntryMetadata(URL entry)
+    {
+        try
+        {
+            URLConnection connection = entry.openConnection();
+            byte[] bytes;
+            try (InputStream in = connection.getInputStream())
+            {
+                bytes = in.readAllBytes();
+            }
+            assertEquals(bytes.length, connection.getContentLengthLong(),
+                "Wrong content length: " + entry);
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
     }
 
     @Test
@@ -574,6 +607,117 @@ public class ModulepathLaunchTest
         b.start();
     }
 
+    @Test
+    void testInstallAll(@TempDir Path storage) throws BundleException
+    {
+        testFramework = getFramework(null,
+            Constants.FRAMEWORK_STORAGE + '=' + storage.toFile().getAbsolutePath());
+
+        final BundleContext bc = testFramework.getBundleContext();
+        assertNotNull(bc, "No context found.");
+
+        final Atomos atomos = bc.getService(
+            bc.getServiceReference(Atomos.class));
+        final AtomosLayer child = atomos.getBootLayer().addLayer("child",
+            LoaderType.OSGI, new File("target/modules").toPath());
+        final List<Bundle> bundles = child.installAll("child");
+        assertEquals(child.getAtomosContents().size(), bundles.size(),
+            "Wrong number of bundles.");
+        for (AtomosContent content : child.getAtomosContents())
+        {
+            assertTrue(bundles.contains(content.getBundle()),
+                "Missing bundle for: " + content);
+            assertTrue(content.getBundle().getLocation().startsWith("child:"),
+                "Wrong location prefix: " + content.getBundle().getLocation());
+        }
+
+        // installing again returns the existing bundles
+        assertEquals(bundles, child.installAll("child"), "Wrong bundles.");
+
+        try
+        {
+            child.installAll("shouldFail");
+            fail("Should not be able to install with different prefix");
+        }
+        catch (final BundleException e)
+        {
+            // expected
+        }
+
+        child.uninstall();
+        try
+        {
+            child.installAll("child");
+            fail("Should not be able to install an uninstalled layer");
+        }
+        catch (final BundleException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    void testInstallAllFailure(@TempDir Path storage) throws BundleException, IOException
+    {
+        testFramework = getFramework(null,
+            Constants.FRAMEWORK_STORAGE + '=' + storage.toFile().getAbsolutePath(),
+            Constants.FRAMEWORK_BSNVERSION + '=' + Constants.FRAMEWORK_BSNVERSION_SINGLE);
+
+        final BundleContext bc = testFramework.getBundleContext();
+        assertNotNull(bc, "No context found.");
+
+        final Atomos atomos = bc.getService(
+            bc.getServiceReference(Atomos.class));
+        final AtomosLayer child = atomos.getBootLayer().addLayer("child",
+            LoaderType.OSGI, new File("target/modules").toPath());
+        final List<AtomosContent> contents = child.getAtomosContents().stream().sorted().collect(
+            Collectors.toList());
+        // a bundle with the same name and version makes the install of a content fail
+        final int failing = contents.size() / 2;
+        final Bundle collision = bc.installBundle("collision",
+            getBundleJar(contents.get(failing)));
+
+        try
+        {
+            child.installAll("child");
+            fail("Should not be able to install a colliding content");
+        }
+        catch (final BundleException e)
+        {
+            // expected
+        }
+        for (int i = 0; i < contents.size(); i++)
+        {
+            final AtomosContent content = contents.get(i);
+            if (i < failing)
+            {
+                assertNotNull(content.getBundle(), "Content not installed: " + content);
+            }
+            else
+            {
+                assertNull(content.getBundle(), "Content installed: " + content);
+                assertNull(content.getConnectLocation(), "Content connected: " + content);
+            }
+        }
+
+        collision.uninstall();
+        assertEquals(contents.size(), child.installAll("child").size(),
+            "Wrong number of bundles.");
+    }
+
+    private static InputStream getBundleJar(AtomosContent content) throws IOException
+    {
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, content.getSymbolicName());
+        attributes.putValue(Constants.BUNDLE_VERSION, content.getVersion().toString());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new JarOutputStream(bytes, manifest).close();
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+
     @Test
     void testInvalidUseOfRuntime(
         @TempDir Path storage)
@@ -917,6 +1061,59 @@ public class ModulepathLaunchTest
         }
     }
 
+    @Test
+    void testResourceGetResources(@TempDir Path storage)
+        throws BundleException, IOException
+    {
+        final ClassLoader cl = getCLForResourceTests(storage);
+        final List<URL> rescs = Collections.list(cl.getResources("META-TEXT/file.txt"));
+        // the resources of the module come first followed by any system resources
+        assertFalse(rescs.isEmpty(), "No resources found.");
+        assertEquals(cl.getResource("META-TEXT/file.txt"), rescs.get(0),
+            "Wrong resource.");
+        assertEquals("/META-TEXT/file.txt", new BufferedReader(
+            new InputStreamReader(rescs.get(0).openStream())).readLine(),
+            "Incorrect contents from URL");
+
+        assertNull(cl.getResource("META-TEXT/noFile.txt"),
+            "get of non-existent resource should return null.");
+        assertFalse(cl.getResources("META-TEXT/noFile.txt").hasMoreElements(),
+            "Unexpected resources.");
+    }
+
+    @Test
+    void testLoaderMissCache(@TempDir Path storage) throws BundleException
+    {
+        final ClassLoader cl = getCLForResourceTests(storage);
+        final Atomos atomos = testFramework.getBundleContext().getService(
+            testFramework.getBundleContext().getServiceReference(Atomos.class));
+        assertTrue(atomos.getBootLayer().adapt(LookupMissStatistics.class).isEmpty(),
+            "Unexpected miss cache for the boot layer.");
+        final AtomosLayer child = atomos.getBootLayer().getChildren().iterator().next();
+        final LookupMissStatistics cache = child.adapt(
+            LookupMissStatistics.class).orElseThrow();
+        final int size = cache.size();
+        final long hits = cache.getHits();
+        final long misses = cache.getMisses();
+
+        final String missingClass = TESTBUNDLES_RESOURCE_A + ".DoesNotExist";
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                cl.loadClass(missingClass);
+                fail("Expected ClassNotFoundException.");
+            }
+            catch (ClassNotFoundException e)
+            {
+                // expected
+            }
+        }
+        assertEquals(size + 1, cache.size(), "Wrong number of cached misses.");
+        assertEquals(hits + 1, cache.getHits(), "Wrong number of hits.");
+        assertTrue(cache.getMisses() > misses, "Wrong number of misses.");
+    }
+
     private static final String BSN_CONTRACT = "atomos.service.contract";
     private static final String BSN_SERVICE_IMPL = "org.apache.felix.atomos.tests.testbundles.service.impl";
     @Test
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.utils.core;
+
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public final class JarOutputUtil
+{
+    private JarOutputUtil()
+    {
+    }
+
+    /**
+     * Writes an entry with the specified bytes. When stored is true the entry is
+     * written uncompressed, which lets the Atomos runtime serve it straight from a
+     * memory mapped archive (see the {@code atomos.map.archives} property).
+     */
+    public static void putEntry(JarOutputStream jos, JarEntry entry, byte[] bytes,
+        boolean stored) throws IOException
+    {
+        if (stored)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        jos.putNextEntry(entry);
+        jos.write(bytes);
+    }
+}
@@ -23,4 +23,12 @@ public interface ShadeConfig
      */
     Path shadeOutputDirectory();
 
+    /**
+     * @return true if the entries of the shaded jar are stored uncompressed
+     */
+    default boolean storeEntries()
+    {
+        return false;
+    }
+
 }
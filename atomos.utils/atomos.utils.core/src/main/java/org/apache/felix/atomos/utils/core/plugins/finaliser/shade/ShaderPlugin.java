@@ -34,6 +34,7 @@ import java.util.stream.Collectors;
 import org.apache.felix.atomos.utils.api.Context;
 import org.apache.felix.atomos.utils.api.FileType;
 import org.apache.felix.atomos.utils.api.plugin.FinalPlugin;
+import org.apache.felix.atomos.utils.core.JarOutputUtil;
 
 public class ShaderPlugin implements FinalPlugin<ShadeConfig>
 {
@@ -99,8 +100,7 @@ public class ShaderPlugin implements FinalPlugin<ShadeConfig>
                     {
                         return;
                     }
-                    JarEntry jarEntry = new JarEntry(c.getName());
-                    jarOutputStream.putNextEntry(jarEntry);
+                    byte[] bytes;
                     if (c.getName().startsWith("services"))
                     {
                         AtomicBoolean ab = new AtomicBoolean();
@@ -115,7 +115,7 @@ public class ShaderPlugin implements FinalPlugin<ShadeConfig>
                             InputStream is = jar.getInputStream(e);
                             sb.append(is);
                         }
-                        jarOutputStream.write(sb.toString().getBytes());
+                        bytes = sb.toString().getBytes();
                     }
                     else
                     {
@@ -137,8 +137,10 @@ public class ShaderPlugin implements FinalPlugin<ShadeConfig>
                         JarFile j = c.any();
                         JarEntry e = j.getJarEntry(c.getName());
                         InputStream is = j.getInputStream(e);
-                        jarOutputStream.write(is.readAllBytes());
+                        bytes = is.readAllBytes();
                     }
+                    JarOutputUtil.putEntry(jarOutputStream, new JarEntry(c.getName()),
+                        bytes, config.storeEntries());
                 }
                 catch (IOException e)
                 {
@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.utils.core.plugins.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.felix.atomos.utils.api.IndexInfo;
+import org.apache.felix.atomos.utils.core.IndexInfoImpl;
+
+/**
+ * Writes the binary Atomos bundle index read by
+ * {@code org.apache.felix.atomos.impl.content.BinaryIndex}.  The constants
+ * here must match the ones used by the reader.
+ */
+public final class BinaryIndexWriter
+{
+    static final int MAGIC = 0x41544958;
+    static final int VERSION = 1;
+    static final int SECTION_STRINGS = 1;
+    static final int SECTION_BUNDLES = 2;
+    static final int SECTION_ENTRY_ATTRIBUTES = 3;
+    static final int SECTION_PACKAGES = 4;
+
+    static final String BUNDLE_SEPARATOR = "ATOMOS_BUNDLE";
+
+    private static final long[] UNKNOWN = { -1, -1 };
+
+    private BinaryIndexWriter()
+    {
+    }
+
+    /**
+     * Converts a text bundle index to a binary index.  The text index has a
+     * {@code ATOMOS_BUNDLE} line before the id, symbolic name, version and
+     * entries of each bundle.  The sizes and times of the entries are not known.
+     * @param textIndex the lines of the text index
+     * @return the binary index
+     * @throws IOException if an error occurs writing the index
+     */
+    public static byte[] convert(List<String> textIndex) throws IOException
+    {
+        List<IndexInfo> infos = new ArrayList<>();
+        for (int i = 0; i < textIndex.size(); i++)
+        {
+            if (!BUNDLE_SEPARATOR.equals(textIndex.get(i)))
+            {
+                continue;
+            }
+            IndexInfoImpl info = new IndexInfoImpl();
+            info.setId(textIndex.get(++i));
+            info.setBsn(textIndex.get(++i));
+            info.setVersion(textIndex.get(++i));
+            List<String> files = new ArrayList<>();
+            while (i + 1 < textIndex.size()
+                && !BUNDLE_SEPARATOR.equals(textIndex.get(i + 1)))
+            {
+                files.add(textIndex.get(++i));
+            }
+            info.setFiles(files);
+            infos.add(info);
+        }
+        return write(infos, Collections.emptyMap());
+    }
+
+    /**
+     * Writes the binary index.
+     * @param infos the bundles to index
+     * @param entryAttributes the size and time of the entries of each bundle
+     *        by bundle id
+     * @return the binary index
+     * @throws IOException if an error occurs writing the index
+     */
+    static byte[] write(List<IndexInfo> infos,
+        Map<String, Map<String, long[]>> entryAttributes) throws IOException
+    {
+        // the unique entry paths of all bundles sorted by their UTF-8 bytes
+        byte[][] strings = infos.stream().flatMap(i -> i.getFiles().stream()).distinct().map(
+            f -> f.getBytes(StandardCharsets.UTF_8)).sorted(
+                Arrays::compareUnsigned).toArray(byte[][]::new);
+        Map<String, Integer> stringIds = new HashMap<>();
+        for (int i = 0; i < strings.length; i++)
+        {
+            stringIds.put(new String(strings[i], StandardCharsets.UTF_8), i);
+        }
+
+        ByteArrayOutputStream stringsBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(stringsBytes))
+        {
+            out.writeInt(strings.length);
+            int offset = 0;
+            for (byte[] string : strings)
+            {
+                out.writeInt(offset);
+                offset += string.length;
+            }
+            out.writeInt(offset);
+            for (byte[] string : strings)
+            {
+                out.write(string);
+            }
+        }
+
+        ByteArrayOutputStream bundlesBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream attributesBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream packagesBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bundlesBytes);
+            DataOutputStream attributesOut = new DataOutputStream(attributesBytes);
+            DataOutputStream packagesOut = new DataOutputStream(packagesBytes))
+        {
+            out.writeInt(infos.size());
+            for (IndexInfo info : infos)
+            {
+                writeString(info.getId(), out);
+                writeString(info.getBundleSymbolicName(), out);
+                writeString(info.getVersion(), out);
+                // the entry ids in bundle order followed by the sorted entry ids
+                int[] ids = info.getFiles().stream().mapToInt(
+                    stringIds::get).distinct().toArray();
+                out.writeInt(ids.length);
+                for (int id : ids)
+                {
+                    out.writeInt(id);
+                }
+                Map<String, long[]> attributes = entryAttributes.getOrDefault(
+                    info.getId(), Collections.emptyMap());
+                for (int id : Arrays.stream(ids).sorted().toArray())
+                {
+                    out.writeInt(id);
+                    long[] sizeAndTime = attributes.getOrDefault(
+                        new String(strings[id], StandardCharsets.UTF_8), UNKNOWN);
+                    attributesOut.writeLong(sizeAndTime[0]);
+                    attributesOut.writeLong(sizeAndTime[1]);
+                }
+                Set<String> packages = getPackages(info.getFiles());
+                packagesOut.writeInt(packages.size());
+                for (String pkg : packages)
+                {
+                    writeString(pkg, packagesOut);
+                }
+            }
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(result))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(4);
+            writeSection(SECTION_STRINGS, stringsBytes.toByteArray(), out);
+            writeSection(SECTION_BUNDLES, bundlesBytes.toByteArray(), out);
+            writeSection(SECTION_ENTRY_ATTRIBUTES, attributesBytes.toByteArray(), out);
+            writeSection(SECTION_PACKAGES, packagesBytes.toByteArray(), out);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Returns the private and exported packages of a bundle, using the same
+     * rules Atomos uses when it scans the entries of a bundle at runtime.
+     * @param files the entries of the bundle
+     * @return the packages
+     */
+    static Set<String> getPackages(List<String> files)
+    {
+        Set<String> packages = new TreeSet<>();
+        for (String file : files)
+        {
+            int length = file.length();
+            int lastSlash = file.lastIndexOf('/');
+            if (length > 1 && file.indexOf('-') < 0 && lastSlash > 0
+                && lastSlash != length - 1)
+            {
+                packages.add(file.substring(0, lastSlash).replace('/', '.'));
+            }
+        }
+        return packages;
+    }
+
+    private static void writeSection(int tag, byte[] section, DataOutputStream out)
+        throws IOException
+    {
+        out.writeInt(tag);
+        out.writeInt(section.length);
+        out.write(section);
+    }
+
+    private static void writeString(String value, DataOutputStream out)
+        throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
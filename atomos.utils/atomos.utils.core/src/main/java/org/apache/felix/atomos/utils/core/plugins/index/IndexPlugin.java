@@ -43,13 +43,14 @@ import org.apache.felix.atomos.utils.api.FileType;
 import org.apache.felix.atomos.utils.api.IndexInfo;
 import org.apache.felix.atomos.utils.api.plugin.JarPlugin;
 import org.apache.felix.atomos.utils.core.IndexInfoImpl;
+import org.apache.felix.atomos.utils.core.JarOutputUtil;
 import org.apache.felix.atomos.utils.substrate.impl.config.DefaultResourceConfiguration;
 import org.apache.felix.atomos.utils.substrate.impl.json.ResourceJsonUtil;
 import org.osgi.framework.Constants;
 
 public class IndexPlugin implements JarPlugin<IndexPluginConfig>
 {
-    private static final String ATOMOS_BUNDLE_SEPARATOR = "ATOMOS_BUNDLE";
+    private static final String ATOMOS_BUNDLE_SEPARATOR = BinaryIndexWriter.BUNDLE_SEPARATOR;
 
     public static final String ATOMOS_BUNDLES_BASE_PATH = "atomos/";
     public static final String ATOMOS_INDEX_FILE_NAME = "bundles.index";
@@ -81,6 +82,8 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
 
     private ArrayList<IndexInfo> indexInfos;
     private Map<String, Boolean> uniquePaths;
+    // the size and time of each entry by index id, for the binary index
+    private Map<String, Map<String, long[]>> entryAttributes;
 
     private Path substrateJar;
 
@@ -138,7 +141,9 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
         {
             info.setVersion("0.0");
         }
+        Map<String, long[]> attributes = new HashMap<>();
         List<String> files = jar.stream().peek(j -> {
+            attributes.put(j.getName(), new long[] { j.getSize(), j.getTime() });
             try
             {
                 if (Boolean.FALSE == uniquePaths.get(j.getName()))
@@ -155,8 +160,8 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
                         {
                             entry.setComment(j.getComment());
                         }
-                        jos.putNextEntry(entry);
-                        jos.write(jar.getInputStream(j).readAllBytes());
+                        JarOutputUtil.putEntry(jos, entry,
+                            jar.getInputStream(j).readAllBytes(), config.storeEntries());
                     }
                     else
                     {
@@ -179,6 +184,7 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
 
         info.setFiles(files);
         indexInfos.add(info);
+        entryAttributes.put(info.getId(), attributes);
     }
 
     @Override
@@ -202,12 +208,14 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
         {
 
             final List<String> bundleIndexLines = new ArrayList<>();
+            final List<IndexInfo> bundleInfos = new ArrayList<>();
             final Collection<String> resources = new LinkedHashSet<>();
             indexInfos.stream() //
                 .filter((i) -> i.getBundleSymbolicName() != null) //
                 .sorted((i1, i2) -> i1.getBundleSymbolicName().compareTo(
                     i2.getBundleSymbolicName())) //
                 .forEach((i) -> {
+                    bundleInfos.add(i);
                     bundleIndexLines.add(ATOMOS_BUNDLE_SEPARATOR);
                     bundleIndexLines.add(i.getId());
                     bundleIndexLines.add(i.getBundleSymbolicName());
@@ -245,7 +253,9 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
                     }
                 });
             }
-            writeIndexFile(indexBytes.toByteArray(), context);
+            writeIndexFile(IndexFormat.BINARY.equals(config.indexFormat())
+                ? BinaryIndexWriter.write(bundleInfos, entryAttributes)
+                : indexBytes.toByteArray(), context);
 
             if (isJarType())
             {
@@ -323,6 +333,7 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
         counter = new AtomicLong(0);
         indexInfos = new ArrayList<>();
         uniquePaths = new HashMap<>();
+        entryAttributes = new HashMap<>();
     }
 
     private void writeGraalResourceConfig(Collection<String> resources, Context context)
@@ -338,8 +349,8 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
 
         final JarEntry graalResConfEntry = new JarEntry(
             "META-INF/native-image/resource-config.json");
-        jos.putNextEntry(graalResConfEntry);
-        jos.write(graalResConfJson.getBytes());
+        JarOutputUtil.putEntry(jos, graalResConfEntry, graalResConfJson.getBytes(),
+            config.storeEntries());
         jos.flush();
 
     }
@@ -349,8 +360,7 @@ public class IndexPlugin implements JarPlugin<IndexPluginConfig>
         if (isJarType())
         {
             final JarEntry atomosIndexEntry = new JarEntry(ATOMOS_BUNDLES_INDEX);
-            jos.putNextEntry(atomosIndexEntry);
-            jos.write(bytes);
+            JarOutputUtil.putEntry(jos, atomosIndexEntry, bytes, config.storeEntries());
         }
         else
         {
@@ -24,4 +24,23 @@ public interface IndexPluginConfig
     {
         return IndexOutputType.JAR;
     }
+
+    /**
+     * The format of the bundles index.  The default is the text format, which is
+     * read by all Atomos runtimes.  The binary format also records the size and
+     * time of every entry but can only be read by runtimes that support it.
+     */
+    default IndexFormat indexFormat()
+    {
+        return IndexFormat.TEXT;
+    }
+
+    /**
+     * If the entries of the index jar are stored uncompressed.  The default is
+     * false.
+     */
+    default boolean storeEntries()
+    {
+        return false;
+    }
 }
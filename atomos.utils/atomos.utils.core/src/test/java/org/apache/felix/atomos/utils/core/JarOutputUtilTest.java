@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.utils.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.felix.atomos.impl.content.MappedArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JarOutputUtilTest
+{
+    private static final byte[] CONTENT = "stored content stored content".getBytes(
+        StandardCharsets.UTF_8);
+
+    @Test
+    void testStored(@TempDir Path dir) throws IOException
+    {
+        Path file = write(dir.resolve("stored.jar"), true);
+        try (JarFile jar = new JarFile(file.toFile()))
+        {
+            JarEntry entry = jar.getJarEntry("a/b.txt");
+            assertEquals(ZipEntry.STORED, entry.getMethod(), "Wrong method.");
+            assertEquals(CONTENT.length, entry.getCompressedSize(), "Wrong size.");
+            assertArrayEquals(CONTENT, jar.getInputStream(entry).readAllBytes(),
+                "Wrong content.");
+        }
+        MappedArchive archive = MappedArchive.open(file);
+        ByteBuffer buffer = archive.read("a/b.txt");
+        assertTrue(buffer.isDirect(), "Stored entry is not a slice of the mapping.");
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertArrayEquals(CONTENT, bytes, "Wrong mapped content.");
+    }
+
+    @Test
+    void testDeflated(@TempDir Path dir) throws IOException
+    {
+        Path file = write(dir.resolve("deflated.jar"), false);
+        try (JarFile jar = new JarFile(file.toFile()))
+        {
+            JarEntry entry = jar.getJarEntry("a/b.txt");
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod(), "Wrong method.");
+            assertArrayEquals(CONTENT, jar.getInputStream(entry).readAllBytes(),
+                "Wrong content.");
+        }
+    }
+
+    private static Path write(Path file, boolean stored) throws IOException
+    {
+        try (JarOutputStream jos = new JarOutputStream(
+            new FileOutputStream(file.toFile())))
+        {
+            JarOutputUtil.putEntry(jos, new JarEntry("a/b.txt"), CONTENT, stored);
+        }
+        return file;
+    }
+}
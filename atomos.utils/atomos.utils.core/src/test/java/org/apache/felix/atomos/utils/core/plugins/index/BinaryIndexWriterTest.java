@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.utils.core.plugins.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.atomos.impl.content.BinaryIndex;
+import org.apache.felix.atomos.impl.content.BinaryIndex.IndexedBundle;
+import org.apache.felix.atomos.utils.api.IndexInfo;
+import org.apache.felix.atomos.utils.core.IndexInfoImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BinaryIndexWriterTest
+{
+    private static final List<String> FILES_1 = List.of("META-INF/",
+        "META-INF/MANIFEST.MF", "org/", "org/a/", "org/a/A.class", "org/a/b/B.class",
+        "res-1/x.txt", "common.txt", "ü/ü.txt");
+    private static final List<String> FILES_2 = List.of("z.txt",
+        "META-INF/MANIFEST.MF", "org/a/A.class");
+
+    @Test
+    void testWrite(@TempDir Path dir) throws IOException
+    {
+        List<IndexInfo> infos = List.of(info("1", "bundle.1", "1.0.0", FILES_1),
+            info("2", "bundle.2", "2.0.0", FILES_2));
+        Map<String, Map<String, long[]>> attributes = Map.of("1",
+            Map.of("org/a/A.class", new long[] { 10, 1000 }, "ü/ü.txt",
+                new long[] { 3, 2000 }));
+
+        List<IndexedBundle> bundles = read(BinaryIndexWriter.write(infos, attributes),
+            dir);
+        assertEquals(2, bundles.size(), "Wrong number of bundles.");
+        assertBundle(bundles.get(0), "1", "bundle.1", "1.0.0", FILES_1);
+        assertBundle(bundles.get(1), "2", "bundle.2", "2.0.0", FILES_2);
+
+        IndexedBundle b1 = bundles.get(0);
+        assertEquals(10, b1.getSize("org/a/A.class"), "Wrong size.");
+        assertEquals(1000, b1.getLastModified("org/a/A.class"), "Wrong time.");
+        assertEquals(3, b1.getSize("ü/ü.txt"), "Wrong size.");
+        assertEquals(2000, b1.getLastModified("ü/ü.txt"), "Wrong time.");
+        assertEquals(-1, b1.getSize("common.txt"), "Wrong unknown size.");
+        assertEquals(-1, b1.getLastModified("common.txt"), "Wrong unknown time.");
+        IndexedBundle b2 = bundles.get(1);
+        // the same path in another bundle has its own attributes
+        assertEquals(-1, b2.getSize("org/a/A.class"), "Wrong unknown size.");
+
+        assertEquals(List.of("org.a", "org.a.b", "ü"), b1.getPackages(),
+            "Wrong packages.");
+        assertEquals(List.of("org.a"), b2.getPackages(), "Wrong packages.");
+    }
+
+    @Test
+    void testConvert(@TempDir Path dir) throws IOException
+    {
+        List<String> textIndex = new ArrayList<>();
+        textIndex.addAll(List.of("ATOMOS_BUNDLE", "1", "bundle.1", "1.0.0"));
+        textIndex.addAll(FILES_1);
+        textIndex.addAll(List.of("ATOMOS_BUNDLE", "2", "bundle.2", "2.0.0"));
+        textIndex.addAll(FILES_2);
+
+        List<IndexedBundle> bundles = read(BinaryIndexWriter.convert(textIndex), dir);
+        assertEquals(2, bundles.size(), "Wrong number of bundles.");
+        assertBundle(bundles.get(0), "1", "bundle.1", "1.0.0", FILES_1);
+        assertBundle(bundles.get(1), "2", "bundle.2", "2.0.0", FILES_2);
+        assertEquals(-1, bundles.get(0).getSize("org/a/A.class"), "Wrong unknown size.");
+    }
+
+    private static IndexInfo info(String id, String bsn, String version,
+        List<String> files)
+    {
+        IndexInfoImpl info = new IndexInfoImpl();
+        info.setId(id);
+        info.setBsn(bsn);
+        info.setVersion(version);
+        info.setFiles(files);
+        return info;
+    }
+
+    private static List<IndexedBundle> read(byte[] index, Path dir) throws IOException
+    {
+        Path file = dir.resolve("bundles.index");
+        Files.write(file, index);
+        BinaryIndex binaryIndex = BinaryIndex.open(file.toUri().toURL());
+        assertNotNull(binaryIndex, "Not a binary index.");
+        return binaryIndex.getBundles();
+    }
+
+    private static void assertBundle(IndexedBundle bundle, String id, String bsn,
+        String version, List<String> files)
+    {
+        assertEquals(id, bundle.getIndex(), "Wrong index.");
+        assertEquals(bsn, bundle.getSymbolicName(), "Wrong symbolic name.");
+        assertEquals(version, bundle.getVersion(), "Wrong version.");
+        assertEquals(files, new ArrayList<>(bundle.getEntries()), "Wrong entries.");
+        for (String file : files)
+        {
+            assertTrue(bundle.getEntries().contains(file), "Missing entry: " + file);
+        }
+        assertFalse(bundle.getEntries().contains("missing.txt"), "Unexpected entry.");
+    }
+}
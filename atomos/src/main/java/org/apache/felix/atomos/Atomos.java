@@ -136,7 +136,10 @@ import org.osgi.framework.launch.Framework;
  * case the {@link AtomosContent#install(String)} method can be used to
  * selectively install Atomos contents. If {@link #ATOMOS_CONTENT_START
  * atomos.content.start} is set to <code>false</code> in the framework
- * configuration then the Atomos bundles will not be started by default. The
+ * configuration then the Atomos bundles will not be started by default. If it
+ * is set to {@link #ATOMOS_CONTENT_START_LAZY lazy} then the Atomos bundles are
+ * started on demand. Bundles with a {@link #ATOMOS_START_TIER_HEADER start tier}
+ * above 0 are started in the background after the framework is started. The
  * system.bundle of the initialized framework will also have an Atomos
  * service registered with its bundle context.
  */
@@ -158,6 +161,50 @@ public interface Atomos
      */
     String ATOMOS_CONTENT_START = AtomosBase.ATOMOS_PROP_PREFIX + "content.start";
 
+    /**
+     * The {@link #ATOMOS_CONTENT_START} value specifying that the Atomos contents
+     * installed as connected bundles are started on demand instead of when the
+     * framework is started. A bundle is started the first time a class is loaded
+     * from the bundle by Atomos, the bundle of one of its classes is looked up
+     * with {@link org.osgi.framework.FrameworkUtil#getBundle(Class)}, or a service
+     * the bundle declares with an {@code osgi.service} capability is looked up or
+     * listened for. The bundles are started asynchronously; the call that triggered
+     * the start does not wait for the bundle to be started. A bundle that is
+     * started or stopped by other means is no longer started on demand.
+     * @since 1.1
+     */
+    String ATOMOS_CONTENT_START_LAZY = "lazy";
+
+    /**
+     * Manifest header specifying the start tier of a bundle installed by Atomos.
+     * The bundles of tier 0 are started while Atomos starts; the bundles of later
+     * tiers are started in the background, one tier after the other, after the
+     * Atomos service is registered. The default tier is 0.
+     * @since 1.1
+     */
+    String ATOMOS_START_TIER_HEADER = "Atomos-StartTier";
+
+    /**
+     * Property of the Atomos service with the {@code Integer} highest start tier of
+     * the Atomos bundles that has been started.
+     * @see #ATOMOS_START_TIER_HEADER
+     * @since 1.1
+     */
+    String ATOMOS_STARTED_TIER = AtomosBase.ATOMOS_PROP_PREFIX + "started.tier";
+
+    /**
+     * Property of the Atomos service that is {@code Boolean.TRUE} once the Atomos
+     * bundles of all start tiers have been started. A readiness check can track
+     * the Atomos service with the filter {@code (atomos.started.tier>=0)} to know
+     * that the bundles of tier 0 are started and with {@code (atomos.started=true)}
+     * to know that all bundles are started. The properties are not set when the
+     * Atomos bundles are not started or are started {@link #ATOMOS_CONTENT_START_LAZY
+     * lazy}, because start tiers are not used then.
+     * @see #ATOMOS_START_TIER_HEADER
+     * @since 1.1
+     */
+    String ATOMOS_STARTED = AtomosBase.ATOMOS_PROP_PREFIX + "started";
+
     /**
      * Returns the Atomos content that is connected with the specified bundle location.
      * The Atomos content returned is used by the connected bundle installed
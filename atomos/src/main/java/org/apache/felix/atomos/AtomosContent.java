@@ -13,6 +13,7 @@
  */
 package org.apache.felix.atomos;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.osgi.annotation.versioning.ProviderType;
@@ -165,4 +166,34 @@ public interface AtomosContent extends Comparable<AtomosContent>
      *         with the Atomos Runtime.
      */
     Bundle getBundle();
+
+    /**
+     * A sorted listing of the entries of an Atomos content that can list a
+     * single directory without walking all the entries of the content.
+     * An Atomos content can be {@link AtomosContent#adapt(Class) adapted} to
+     * this type if its entries are indexed.
+     * <p>
+     * Directory paths use {@code '/'} as the separator and end with {@code '/'}.
+     * The empty string is the root directory.
+     */
+    @ProviderType
+    interface DirectoryListing
+    {
+        /**
+         * Returns the paths of the entries directly in the specified directory in
+         * sorted order.  The paths of sub-directories end with {@code '/'} and are
+         * included even if the content has no entry for the sub-directory itself.
+         * @param directory the directory path
+         * @return the entry paths, or an empty list if the directory does not exist
+         */
+        List<String> list(String directory);
+
+        /**
+         * Returns the paths of all entries that start with the specified prefix
+         * in sorted order.
+         * @param prefix the path prefix
+         * @return the entry paths
+         */
+        List<String> listAll(String prefix);
+    }
 }
@@ -20,6 +20,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.connect.ConnectFrameworkFactory;
 import org.osgi.framework.connect.ModuleConnector;
@@ -59,6 +60,34 @@ public interface AtomosLayer
         MANY
     }
     
+    /**
+     * The statistics of the cache of class and resource names that the loaders of
+     * an {@link LoaderType#OSGI OSGi} layer failed to find.  An OSGi layer can be
+     * {@link AtomosLayer#adapt(Class) adapted} to this type unless the cache is
+     * disabled by setting the {@code atomos.loader.miss.cache.size} property to 0.
+     */
+    @ProviderType
+    interface LookupMissStatistics
+    {
+        /**
+         * Returns the number of lookups answered from the cache.
+         * @return the number of hits
+         */
+        long getHits();
+
+        /**
+         * Returns the number of lookups that were not answered from the cache.
+         * @return the number of misses
+         */
+        long getMisses();
+
+        /**
+         * Returns the number of names remembered by the cache.
+         * @return the number of names
+         */
+        int size();
+    }
+
     /**
      * Adapt this Atomos layer to the specified type. For example,
      * if running in a module layer then the layer can be adapted
@@ -134,6 +163,37 @@ public interface AtomosLayer
      */
     Optional<AtomosContent> findAtomosContent(String symbolicName);
 
+    /**
+     * Installs all {@link #getAtomosContents() Atomos contents} of this layer as
+     * connected bundles.  This has the same result as calling
+     * {@link AtomosContent#install(String)} for each content, but the contents that
+     * are not installed yet are connected to their bundle locations in a single
+     * update before they are installed.  Contents that are already installed at the
+     * location using the given prefix are not installed again.  If installing a
+     * bundle fails then the bundles installed before the failure stay installed and
+     * the contents that were not installed are disconnected again.
+     * @param prefix the prefix of the bundle locations, if {@code null} then the
+     *        prefix {@code atomos} is used
+     * @return the installed connected bundles, including the bundles of contents
+     *         that were already installed
+     * @throws BundleException if this layer has been uninstalled, a content is
+     *         already connected with a bundle at another location or an error occurs
+     *         installing a bundle
+     * @since 1.1
+     */
+    List<Bundle> installAll(String prefix) throws BundleException;
+
+    /**
+     * Same as {@link #installAll(String)} using a null prefix.
+     * @return the installed connected bundles
+     * @throws BundleException if an error occurs installing the Atomos contents
+     * @since 1.1
+     */
+    default List<Bundle> installAll() throws BundleException
+    {
+        return installAll(null);
+    }
+
     /**
      * The name of the Atomos Layer.  By default the Atomos Layer
      * name is the empty string.  Atomos Layer names are not
@@ -21,6 +21,7 @@ import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.JarURLConnection;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -28,12 +29,14 @@ import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,24 +44,40 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
 
 import org.apache.felix.atomos.Atomos;
 import org.apache.felix.atomos.AtomosContent;
+import org.apache.felix.atomos.AtomosContent.DirectoryListing;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.AtomosLayer.LoaderType;
 import org.apache.felix.atomos.impl.base.AtomosBase.AtomosLayerBase.AtomosContentBase;
 import org.apache.felix.atomos.impl.base.AtomosBase.AtomosLayerBase.AtomosContentIndexed;
 import org.apache.felix.atomos.impl.base.AtomosBase.AtomosLayerBase.ManifestHolder;
+import org.apache.felix.atomos.impl.base.AtomosFrameworkHooks.AtomosResolverHook;
+import org.apache.felix.atomos.impl.base.AtomosStorage.ContentSnapshot;
+import org.apache.felix.atomos.impl.base.AtomosStorage.ContentSource;
 import org.apache.felix.atomos.impl.content.ConnectContentCloseableJar;
 import org.apache.felix.atomos.impl.content.ConnectContentFile;
+import org.apache.felix.atomos.impl.content.BinaryIndex;
 import org.apache.felix.atomos.impl.content.ConnectContentIndexed;
+import org.apache.felix.atomos.impl.content.FrontCodedPaths;
 import org.apache.felix.atomos.impl.content.ConnectContentJar;
+import org.apache.felix.atomos.impl.content.ZipFileCache;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
@@ -76,6 +95,8 @@ import org.osgi.framework.connect.FrameworkUtilHelper;
 import org.osgi.framework.connect.ModuleConnector;
 import org.osgi.framework.hooks.bundle.CollisionHook;
 import org.osgi.framework.hooks.resolver.ResolverHookFactory;
+import org.osgi.framework.hooks.service.FindHook;
+import org.osgi.framework.hooks.service.ListenerHook;
 import org.osgi.framework.launch.Framework;
 import org.osgi.framework.namespace.IdentityNamespace;
 import org.osgi.framework.namespace.PackageNamespace;
@@ -98,45 +119,173 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
     public static final String ATOMOS_BUNDLES_INDEX_DEFAULT = "/atomos/bundles.index";
     public static final String ATOMOS_BUNDLE = "ATOMOS_BUNDLE";
     public static final String ATOMOS_LIB_DIR_PROP = ATOMOS_PROP_PREFIX + "lib.dir";
+    /**
+     * The maximum number of JAR files in the {@link #ATOMOS_LIB_DIR_PROP lib directory}
+     * that are kept open at the same time.  When more JAR files are in use the least
+     * recently used ones are closed and opened again when they are used.  The default
+     * is 0 which keeps all JAR files open.
+     */
+    public static final String ATOMOS_LIB_MAX_OPEN_PROP = ATOMOS_PROP_PREFIX + "lib.max.open";
+    /**
+     * The number of threads used to discover Atomos contents.  The default is 1 which
+     * discovers contents on the calling thread.  When greater than 1 the reading of
+     * the bundle manifests and the calls to the header provider are done in parallel.
+     * Note that the header provider must be thread safe when this is enabled.
+     */
+    public static final String ATOMOS_DISCOVERY_PARALLELISM_PROP = ATOMOS_PROP_PREFIX
+        + "discovery.parallelism";
+    /**
+     * Specifies if the boot layer is discovered on a background thread started when
+     * Atomos is created.  The default is true which lets the caller locate the
+     * framework factory and create the framework while the contents are discovered;
+     * the discovery is waited for when the boot layer or the connected contents are
+     * first needed.  Errors of the discovery are thrown when it is waited for.
+     */
+    public static final String ATOMOS_DISCOVERY_ASYNC_PROP = ATOMOS_PROP_PREFIX
+        + "discovery.async";
+    /**
+     * Enables the discovery snapshot when set to true.  The discovered contents are
+     * saved along with the size and last modified time of their JAR files in the
+     * Atomos store of the {@link Constants#FRAMEWORK_STORAGE framework storage}.
+     * The next Atomos created with the same framework storage in its configuration
+     * creates the contents of unchanged JAR files from the snapshot without opening them.
+     * Note that the header provider is not called for contents created from the snapshot.
+     */
+    public static final String ATOMOS_DISCOVERY_SNAPSHOT_PROP = ATOMOS_PROP_PREFIX
+        + "discovery.snapshot";
+    /**
+     * The maximum number of class and resource names that the loaders of an
+     * {@link LoaderType#OSGI OSGi} layer remember as not found.  The default is 4096.
+     * A value of 0 disables the cache.
+     */
+    public static final String ATOMOS_LOADER_MISS_CACHE_SIZE_PROP = ATOMOS_PROP_PREFIX
+        + "loader.miss.cache.size";
+    /**
+     * If true the entries of class path directories are read in one walk and kept in
+     * a snapshot that is invalidated by watching the directories with a
+     * {@link java.nio.file.WatchService}.  Entries created after the snapshot are
+     * still found; deleted entries are found until the watch service reports the
+     * deletion, which may take seconds with a polling watch service.  The default is
+     * false which looks up every entry in the file system.
+     */
+    public static final String ATOMOS_DIRECTORY_SNAPSHOT_PROP = ATOMOS_PROP_PREFIX
+        + "directory.snapshot";
+    /**
+     * If true the JAR files of the {@link #ATOMOS_LIB_DIR_PROP lib directory} and the
+     * modular JAR files of module layers are memory mapped and the bytes of their
+     * entries are read from the mapping.  Classes stored without compression are then
+     * defined by {@link LoaderType#OSGI OSGi} layer loaders without copying their
+     * bytes.  The default is false.
+     */
+    public static final String ATOMOS_MAP_ARCHIVES_PROP = ATOMOS_PROP_PREFIX
+        + "map.archives";
+    /**
+     * The maximum number of Atomos bundles started at the same time when Atomos
+     * starts the bundles it installed.  The default is 1 which starts the bundles one
+     * at a time on the thread starting the framework.  When greater than 1 the
+     * bundles are resolved first and then started in waves; a bundle is started
+     * after the bundles providing its wires, bundles of one wave are started in
+     * parallel.  Note that bundle activators must not depend on the start order of
+     * bundles that they have no wires to when this is enabled.
+     */
+    public static final String ATOMOS_START_PARALLELISM_PROP = ATOMOS_PROP_PREFIX
+        + "start.parallelism";
+    /**
+     * The kind of threads used to start bundles in parallel, either {@code platform}
+     * or {@code virtual}.  The default is {@code platform}.  Virtual threads are only
+     * used when the Java runtime supports them.
+     * @see #ATOMOS_START_PARALLELISM_PROP
+     */
+    public static final String ATOMOS_START_THREADS_PROP = ATOMOS_PROP_PREFIX
+        + "start.threads";
+    /**
+     * The start tiers of the bundles installed by Atomos, a comma separated list of
+     * {@code pattern=tier} where the pattern matches bundle symbolic names and may
+     * use {@code *} as a wildcard.  The first matching pattern is used; bundles not
+     * matched use the {@link Atomos#ATOMOS_START_TIER_HEADER} header or tier 0.  The
+     * bundles of tier 0 are started while Atomos starts, the bundles of later tiers
+     * are started in the background after the Atomos service is registered.  Tiers
+     * are ignored when {@link Atomos#ATOMOS_CONTENT_START} is {@code false} or
+     * {@link Atomos#ATOMOS_CONTENT_START_LAZY lazy}; the Atomos service then has no
+     * {@link Atomos#ATOMOS_STARTED} and {@link Atomos#ATOMOS_STARTED_TIER} properties.
+     */
+    public static final String ATOMOS_START_TIERS_PROP = ATOMOS_PROP_PREFIX
+        + "start.tiers";
     public static final String ATOMOS_CLASS_PROP = ATOMOS_PROP_PREFIX + ".class";
     public static final String ATOMOS_RUNTIME_MODULES_CLASS = "org.apache.felix.atomos.impl.modules.AtomosModules";
     public static final String ATOMOS_LIB_DIR = "atomos_lib";
     public static final String GRAAL_NATIVE_IMAGE_KIND = "org.graalvm.nativeimage.kind";
     public static final HeaderProvider NO_OP_HEADER_PROVIDER = (
         l, h) -> Optional.empty();
+    // the milliseconds to wait on stop for the bundle a later start tier is starting
+    private static final long STOP_TIMEOUT = 10000;
 
     private final boolean DEBUG;
     private final boolean REPORT_RESOLUTION_ERRORS;
     private final String indexPath;
+    private final int discoveryParallelism;
+    private final boolean discoveryAsync;
+    private volatile Supplier<AtomosLayer> bootLayer;
+    private volatile Future<AtomosLayer> bootLayerDiscovery;
+    // the thread discovering the boot layer, which must not wait for itself
+    private volatile Thread bootLayerDiscoverer;
+    private final ZipFileCache libZipFiles;
+    private final boolean mapArchives;
+    private final boolean directorySnapshot;
+    private final int startParallelism;
+    private final String startThreads;
+    private final Map<Pattern, Integer> startTierPatterns;
+    // null if the discovery snapshot is not enabled
+    private final Map<Long, Map<String, ContentSnapshot>> discoverySnapshot;
 
     private final AtomicReference<BundleContext> context = new AtomicReference<>();
     private final AtomicReference<File> storeRoot = new AtomicReference<>();
 
     private ServiceRegistration<?> atomosCommandsReg = null;
+    // null unless the Atomos contents are started on demand
+    private volatile AtomosLazyActivator lazyActivator = null;
+    private volatile AtomosStartTiers startTiers = null;
+    private ServiceRegistration<?> lazyActivatorReg = null;
     private ServiceRegistration<?> atomosReg = null;
     protected final Map<String, String> config = new ConcurrentHashMap<String, String>();
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
-    // The following are all protected by the read/write lock
+    // The following are concurrent maps that can be read without holding the lock.
+    // Updates that must be consistent across more than one map are done while
+    // holding the write lock so that writers do not interleave.
 
     // A map of Atomos contents that have a connect location; the key is the connect location
-    private final Map<String, AtomosContentBase> connectLocationToAtomosContent = new HashMap<>();
+    private final Map<String, AtomosContentBase> connectLocationToAtomosContent = new ConcurrentHashMap<>();
     // A map of all Atomos contents discovered (may not be installed as OSGi bundles); the key is the Atomos location
-    private final Map<String, AtomosContentBase> atomosLocationToAtomosContent = new HashMap<>();
+    private final Map<String, AtomosContentBase> atomosLocationToAtomosContent = new ConcurrentHashMap<>();
     // A map of connect locations for Atomos contents; key is the AtomosContentBase.getKey()
     // Used to lookup an OSGi bundle location for a Class<?> in getBundleLocation(Class<?>)
-    protected final Map<Object, String> atomosKeyToConnectLocation = new HashMap<>();
+    protected final Map<Object, String> atomosKeyToConnectLocation = new ConcurrentHashMap<>();
     // A map of Layers keyed by layer ID
-    final Map<Long, AtomosLayerBase> idToLayer = new HashMap<>();
+    final Map<Long, AtomosLayerBase> idToLayer = new ConcurrentHashMap<>();
     // A map of connect locations for Atomos contents; key is Atomos content
-    private final Map<AtomosContent, String> atomosContentToConnectLocation = new HashMap<>();
+    private final Map<AtomosContent, String> atomosContentToConnectLocation = new ConcurrentHashMap<>();
     // A set of connect locations that the framework has connected using the AtomosModuleConnector
-    private final Map<String, AtomosContentBase> connectedLocations = new HashMap<>();
+    private final Map<String, AtomosContentBase> connectedLocations = new ConcurrentHashMap<>();
     // A map of indexed content; key is package name
     private final Map<String, AtomosContentIndexed> packageToAtomosContent = new ConcurrentHashMap<>();
 
     protected final AtomicLong nextLayerId = new AtomicLong(0);
+    // The dense indexes used by the current layers; only modified while holding the write lock
+    private final BitSet layerIndexes = new BitSet();
+
+    // Incremented after any change to the maps used to find the connect location of a class
+    private final AtomicLong locationGeneration = new AtomicLong(0);
+    // Caches the connect location of a class for the current location generation
+    private final ClassValue<CachedLocationHolder> classToConnectLocation = new ClassValue<CachedLocationHolder>()
+    {
+        @Override
+        protected CachedLocationHolder computeValue(Class<?> type)
+        {
+            return new CachedLocationHolder();
+        }
+    };
 
     protected final HeaderProvider headerProvider;
 
@@ -147,6 +296,14 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
     public static Atomos newAtomos(Map<String, String> config,
         HeaderProvider headerProvider)
+    {
+        AtomosBase atomos = createAtomos(config, headerProvider);
+        atomos.discoverBootLayer();
+        return atomos;
+    }
+
+    private static AtomosBase createAtomos(Map<String, String> config,
+        HeaderProvider headerProvider)
     {
         String runtimeClass = config.get(ATOMOS_CLASS_PROP);
         if (runtimeClass != null)
@@ -172,7 +329,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         return new AtomosClassPath(config, headerProvider);
     }
 
-    private static Atomos loadRuntime(String runtimeClass,
+    private static AtomosBase loadRuntime(String runtimeClass,
         Map<String, String> config, HeaderProvider headerProvider)
     {
         try
@@ -210,6 +367,19 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         REPORT_RESOLUTION_ERRORS = Boolean.parseBoolean(
             this.config.get(ATOMOS_REPORT_RESOLUTION_PROP));
         indexPath = getIndexPath(this.config.get(ATOMOS_INDEX_PATH_PROP));
+        discoveryParallelism = getDiscoveryParallelism(
+            this.config.get(ATOMOS_DISCOVERY_PARALLELISM_PROP));
+        discoverySnapshot = loadDiscoverySnapshot(config);
+        discoveryAsync = Boolean.parseBoolean(
+            this.config.getOrDefault(ATOMOS_DISCOVERY_ASYNC_PROP, "true"));
+        libZipFiles = new ZipFileCache(getLibMaxOpen(this.config.get(ATOMOS_LIB_MAX_OPEN_PROP)));
+        mapArchives = Boolean.parseBoolean(this.config.get(ATOMOS_MAP_ARCHIVES_PROP));
+        directorySnapshot = Boolean.parseBoolean(
+            this.config.get(ATOMOS_DIRECTORY_SNAPSHOT_PROP));
+        startParallelism = getStartParallelism(
+            this.config.get(ATOMOS_START_PARALLELISM_PROP));
+        startThreads = getStartThreads(this.config.get(ATOMOS_START_THREADS_PROP));
+        startTierPatterns = getStartTiers(this.config.get(ATOMOS_START_TIERS_PROP));
 
         try
         {
@@ -236,6 +406,253 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         return indexPath;
     }
 
+    private int getDiscoveryParallelism(String parallelism)
+    {
+        if (parallelism == null)
+        {
+            return 1;
+        }
+        try
+        {
+            return Math.max(1, Integer.parseInt(parallelism.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            debug("Invalid discovery parallelism: %s", parallelism);
+            return 1;
+        }
+    }
+
+    private int getStartParallelism(String parallelism)
+    {
+        if (parallelism == null)
+        {
+            return 1;
+        }
+        try
+        {
+            return Math.max(1, Integer.parseInt(parallelism.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            debug("Invalid start parallelism: %s", parallelism);
+            return 1;
+        }
+    }
+
+    private String getStartThreads(String threads)
+    {
+        if (threads == null)
+        {
+            return AtomosBundleStarter.THREADS_PLATFORM;
+        }
+        threads = threads.trim();
+        if (!AtomosBundleStarter.THREADS_PLATFORM.equals(threads)
+            && !AtomosBundleStarter.THREADS_VIRTUAL.equals(threads))
+        {
+            debug("Invalid start threads: %s", threads);
+            return AtomosBundleStarter.THREADS_PLATFORM;
+        }
+        return threads;
+    }
+
+    private Map<Pattern, Integer> getStartTiers(String tiers)
+    {
+        Map<Pattern, Integer> result = new LinkedHashMap<>();
+        if (tiers == null)
+        {
+            return result;
+        }
+        for (String tier : tiers.split(","))
+        {
+            int eq = tier.lastIndexOf('=');
+            try
+            {
+                if (eq < 0)
+                {
+                    throw new NumberFormatException();
+                }
+                String bsn = tier.substring(0, eq).trim();
+                result.put(Pattern.compile(
+                    Arrays.stream(bsn.split("\\*", -1)).map(Pattern::quote).collect(
+                        Collectors.joining(".*"))),
+                    Math.max(0, Integer.parseInt(tier.substring(eq + 1).trim())));
+            }
+            catch (NumberFormatException e)
+            {
+                debug("Invalid start tier: %s", tier);
+            }
+        }
+        return result;
+    }
+
+    private int getLibMaxOpen(String maxOpen)
+    {
+        if (maxOpen == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return Math.max(0, Integer.parseInt(maxOpen.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            debug("Invalid lib max open: %s", maxOpen);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the cache of the open JAR files of the lib directory.
+     * @return the cache
+     */
+    public final ZipFileCache getLibZipFileCache()
+    {
+        return libZipFiles;
+    }
+
+    /**
+     * Returns true if archives are read from memory mappings.
+     * @return true if archives are mapped
+     * @see #ATOMOS_MAP_ARCHIVES_PROP
+     */
+    protected final boolean isMapArchives()
+    {
+        return mapArchives;
+    }
+
+    private Map<Long, Map<String, ContentSnapshot>> loadDiscoverySnapshot(
+        Map<String, String> configuration)
+    {
+        if (!Boolean.parseBoolean(this.config.get(ATOMOS_DISCOVERY_SNAPSHOT_PROP)))
+        {
+            return null;
+        }
+        String storage = configuration.get(Constants.FRAMEWORK_STORAGE);
+        if (storage == null)
+        {
+            // nothing to load, but still record the content sources to save
+            return Collections.emptyMap();
+        }
+        try
+        {
+            return new AtomosStorage(this).loadSnapshot(new File(storage));
+        }
+        catch (IOException e)
+        {
+            debug("Unable to load the discovery snapshot: %s", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Discovers the boot layer.  Called once, after this Atomos is constructed.
+     * @return the boot layer
+     */
+    protected abstract AtomosLayer createBootLayer();
+
+    @Override
+    public final AtomosLayer getBootLayer()
+    {
+        Supplier<AtomosLayer> current = bootLayer;
+        return (current != null ? current : discoverBootLayer()).get();
+    }
+
+    /**
+     * Starts the discovery of the boot layer if it is not started yet.  The
+     * discovery runs on a background thread unless {@link #ATOMOS_DISCOVERY_ASYNC_PROP}
+     * is false.  This is called when Atomos is created, after the constructor
+     * returns, so that the discovery never sees a partly constructed Atomos.
+     * @return a supplier of the boot layer that waits for the discovery
+     */
+    private synchronized Supplier<AtomosLayer> discoverBootLayer()
+    {
+        if (bootLayer != null)
+        {
+            return bootLayer;
+        }
+        FutureTask<AtomosLayer> task = new FutureTask<>(() -> {
+            bootLayerDiscoverer = Thread.currentThread();
+            try
+            {
+                return createBootLayer();
+            }
+            finally
+            {
+                bootLayerDiscoverer = null;
+            }
+        });
+        bootLayerDiscovery = task;
+        // the boot layer is not available to the discovery itself
+        bootLayer = () -> bootLayerDiscoverer == Thread.currentThread() ? null
+            : getDone(task);
+        if (discoveryAsync)
+        {
+            Thread t = new Thread(task, "Atomos boot layer discovery");
+            t.setDaemon(true);
+            t.start();
+        }
+        else
+        {
+            task.run();
+        }
+        return bootLayer;
+    }
+
+    /**
+     * Waits for the discovery of the boot layer to finish.  Does not wait when
+     * called by the discovery itself.
+     */
+    protected final void awaitBootLayer()
+    {
+        Future<AtomosLayer> discovery = bootLayerDiscovery;
+        if (discovery != null && !discovery.isDone()
+            && bootLayerDiscoverer != Thread.currentThread())
+        {
+            getDone(discovery);
+        }
+    }
+
+    private static AtomosLayer getDone(Future<AtomosLayer> discovery)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return discovery.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Error discovering the boot layer.", cause);
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     protected final void lockWrite()
     {
         lock.writeLock().lock();
@@ -258,25 +675,18 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
     protected final AtomosContentBase getByConnectLocation(String location, boolean isManaged)
     {
-        lockRead();
-        try
+        awaitBootLayer();
+        AtomosContentBase result = null;
+        if (isManaged && !Constants.SYSTEM_BUNDLE_LOCATION.equals(location))
         {
-            AtomosContentBase result = null;
-            if (isManaged && !Constants.SYSTEM_BUNDLE_LOCATION.equals(location))
-            {
-                result = connectedLocations.get(location);
-            }
-            else
-            {
-                result = connectLocationToAtomosContent.get(location);
-            }
-            debug("Found content %s for location: %s %s", result, location, isManaged);
-            return result;
+            result = connectedLocations.get(location);
         }
-        finally
+        else
         {
-            unlockRead();
+            result = connectLocationToAtomosContent.get(location);
         }
+        debug("Found content %s for location: %s %s", result, location, isManaged);
+        return result;
     }
 
     final void connectAtomosContent(
@@ -291,23 +701,8 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         lockWrite();
         try
         {
-            AtomosContent existing = connectLocationToAtomosContent.get(connectLocation);
-            if (existing != null && !atomosContent.equals(existing))
-            {
-                throw new IllegalStateException(
-                    "The bundle location is already used by the AtomosContent "
-                        + existing);
-            }
-            String computeLocation = atomosContentToConnectLocation.compute(atomosContent,
-                (c, l) -> l == null ? connectLocation : l);
-
-            if (!Objects.equals(connectLocation, computeLocation))
-            {
-                throw new IllegalStateException(
-                    "Atomos content location is already set: " + computeLocation);
-            }
-            connectLocationToAtomosContent.put(connectLocation, atomosContent);
-            atomosKeyToConnectLocation.put(atomosContent.getKey(), connectLocation);
+            connectLocked(connectLocation, atomosContent);
+            locationGeneration.incrementAndGet();
         }
         finally
         {
@@ -315,29 +710,37 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         }
     }
 
+    // must hold the write lock
+    private void connectLocked(String connectLocation, AtomosContentBase atomosContent)
+    {
+        AtomosContent existing = connectLocationToAtomosContent.get(connectLocation);
+        if (existing != null && !atomosContent.equals(existing))
+        {
+            throw new IllegalStateException(
+                "The bundle location is already used by the AtomosContent "
+                    + existing);
+        }
+        String computeLocation = atomosContentToConnectLocation.compute(atomosContent,
+            (c, l) -> l == null ? connectLocation : l);
+
+        if (!Objects.equals(connectLocation, computeLocation))
+        {
+            throw new IllegalStateException(
+                "Atomos content location is already set: " + computeLocation);
+        }
+        connectLocationToAtomosContent.put(connectLocation, atomosContent);
+        atomosKeyToConnectLocation.put(atomosContent.getKey(), connectLocation);
+    }
+
     void disconnectAtomosContent(AtomosContentBase atomosContent)
     {
         debug("Disconnecting connent: %s", atomosContent);
         lockWrite();
         try
         {
-            if (Constants.SYSTEM_BUNDLE_LOCATION.equals(
-                atomosContent.getAtomosLocation()))
-            {
-                throw new UnsupportedOperationException(
-                    "Cannot disconnect the system bundle content");
-            }
-            String removedLocation = atomosContentToConnectLocation.remove(atomosContent);
-            if (removedLocation != null)
+            if (disconnectLocked(atomosContent))
             {
-                debug("Disconnecting location: %s %s", removedLocation, atomosContent);
-                connectLocationToAtomosContent.remove(removedLocation);
-                atomosKeyToConnectLocation.remove(atomosContent.getKey());
-                connectedLocations.remove(removedLocation);
-            }
-            else
-            {
-                debug("No connected location found for content: %s", atomosContent);
+                locationGeneration.incrementAndGet();
             }
         }
         finally
@@ -346,45 +749,111 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         }
     }
 
-    final AtomosContentBase getByAtomosLocation(String location)
+    /**
+     * Disconnects contents in one update of the registry.
+     * @param atomosContents the contents to disconnect
+     */
+    final void disconnectAtomosContents(Collection<AtomosContentBase> atomosContents)
     {
-        lockRead();
+        debug("Disconnecting %s contents", atomosContents.size());
+        lockWrite();
         try
         {
-            return atomosLocationToAtomosContent.get(location);
+            boolean disconnected = false;
+            for (AtomosContentBase atomosContent : atomosContents)
+            {
+                disconnected |= disconnectLocked(atomosContent);
+            }
+            if (disconnected)
+            {
+                locationGeneration.incrementAndGet();
+            }
         }
         finally
         {
-            unlockRead();
+            unlockWrite();
         }
     }
 
-    protected final AtomosLayerBase getById(long id)
+    // must hold the write lock; returns true if the content was connected
+    private boolean disconnectLocked(AtomosContentBase atomosContent)
     {
-        lockRead();
-        try
+        if (Constants.SYSTEM_BUNDLE_LOCATION.equals(
+            atomosContent.getAtomosLocation()))
         {
-            return idToLayer.get(id);
+            throw new UnsupportedOperationException(
+                "Cannot disconnect the system bundle content");
         }
-        finally
+        String removedLocation = atomosContentToConnectLocation.remove(atomosContent);
+        if (removedLocation != null)
         {
-            unlockRead();
+            debug("Disconnecting location: %s %s", removedLocation, atomosContent);
+            connectLocationToAtomosContent.remove(removedLocation);
+            atomosKeyToConnectLocation.remove(atomosContent.getKey());
+            connectedLocations.remove(removedLocation);
+            return true;
         }
+        debug("No connected location found for content: %s", atomosContent);
+        return false;
     }
 
-    final String getByAtomosContent(AtomosContent atomosContent)
+    /**
+     * Connects each content to its location in one update of the registry.  The
+     * contents are disconnected first, as {@link AtomosContent#disconnect()} does.
+     * If a location cannot be connected then no content is connected.
+     * @param toConnect the locations to connect mapped by content
+     */
+    final void connectAtomosContents(Map<AtomosContentBase, String> toConnect)
     {
-        lockRead();
+        debug("Connecting %s contents", toConnect.size());
+        lockWrite();
         try
         {
-            return atomosContentToConnectLocation.get(atomosContent);
+            // check all locations before changing the registry
+            Map<String, AtomosContentBase> byLocation = new HashMap<>();
+            for (Map.Entry<AtomosContentBase, String> entry : toConnect.entrySet())
+            {
+                AtomosContentBase atomosContent = entry.getKey();
+                String connectLocation = entry.getValue();
+                AtomosContentBase existing = connectLocationToAtomosContent.get(
+                    connectLocation);
+                AtomosContentBase other = byLocation.put(connectLocation, atomosContent);
+                if ((existing != null && !atomosContent.equals(existing)
+                    && !toConnect.containsKey(existing))
+                    || (other != null && !other.equals(atomosContent)))
+                {
+                    throw new IllegalStateException(
+                        "The bundle location is already used by the AtomosContent "
+                            + (other != null ? other : existing));
+                }
+            }
+            toConnect.keySet().forEach(this::disconnectLocked);
+            toConnect.forEach((atomosContent, connectLocation) -> connectLocked(
+                connectLocation, atomosContent));
+            locationGeneration.incrementAndGet();
         }
         finally
         {
-            unlockRead();
+            unlockWrite();
         }
     }
 
+    final AtomosContentBase getByAtomosLocation(String location)
+    {
+        return atomosLocationToAtomosContent.get(location);
+    }
+
+    protected final AtomosLayerBase getById(long id)
+    {
+        awaitBootLayer();
+        return idToLayer.get(id);
+    }
+
+    final String getByAtomosContent(AtomosContent atomosContent)
+    {
+        return atomosContentToConnectLocation.get(atomosContent);
+    }
+
     @Override
     public final AtomosContent getConnectedContent(String bundleLocation)
     {
@@ -419,6 +888,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
     public final AtomosLayer addLayer(List<AtomosLayer> parents, String name,
         LoaderType loaderType, Path... modulePaths)
     {
+        awaitBootLayer();
         return addLayer(parents, name, -1, loaderType, modulePaths);
     }
 
@@ -454,6 +924,125 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
     final Bundle installAtomosContent(String prefix,
         AtomosContentBase atomosContent)
         throws BundleException
+    {
+        prefix = getInstallPrefix(prefix);
+        debug("Installing atomos content: %s%s", prefix,
+            atomosContent.getAtomosLocation());
+
+        BundleContext bc = getInstallContext();
+        String location = getInstallLocation(prefix, atomosContent);
+
+        AtomosLayerBase atomosLayer = (AtomosLayerBase) atomosContent.getAtomosLayer();
+        checkValid(atomosLayer);
+
+        Bundle existing = getInstalledBundle(bc, atomosContent, location);
+        if (existing != null)
+        {
+            return existing;
+        }
+
+        atomosContent.disconnect();
+        atomosContent.connect(location);
+
+        Bundle result = null;
+        try
+        {
+            result = bc.installBundle(location);
+        }
+        finally
+        {
+            // check if the layer is still valid
+            if (atomosLayer.isNotValid())
+            {
+                // The atomosLayer became invalid while installing
+                if (result != null)
+                {
+                    result.uninstall();
+                    result = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Installs all contents of a layer.  The contents that are not installed yet are
+     * connected in one update of the registry and then installed.  If an install
+     * fails the contents left without a bundle are disconnected again.
+     * @see #installAtomosContent(String, AtomosContentBase)
+     */
+    final List<Bundle> installAtomosContents(String prefix, AtomosLayerBase atomosLayer)
+        throws BundleException
+    {
+        prefix = getInstallPrefix(prefix);
+        debug("Installing all atomos contents of layer: %s%s", prefix, atomosLayer);
+
+        BundleContext bc = getInstallContext();
+        checkValid(atomosLayer);
+
+        List<AtomosContentBase> contents = atomosLayer.getAtomosContents().stream().sorted().map(
+            AtomosContentBase.class::cast).collect(Collectors.toList());
+        Map<AtomosContentBase, Bundle> bundles = new HashMap<>();
+        Map<AtomosContentBase, String> toConnect = new LinkedHashMap<>();
+        for (AtomosContentBase atomosContent : contents)
+        {
+            String location = getInstallLocation(prefix, atomosContent);
+            Bundle existing = getInstalledBundle(bc, atomosContent, location);
+            if (existing != null)
+            {
+                bundles.put(atomosContent, existing);
+            }
+            else
+            {
+                toConnect.put(atomosContent, location);
+            }
+        }
+
+        if (!toConnect.isEmpty())
+        {
+            connectAtomosContents(toConnect);
+        }
+        List<Bundle> installed = new ArrayList<>();
+        try
+        {
+            for (Map.Entry<AtomosContentBase, String> entry : toConnect.entrySet())
+            {
+                Bundle b = bc.installBundle(entry.getValue());
+                installed.add(b);
+                bundles.put(entry.getKey(), b);
+                if (atomosLayer.isNotValid())
+                {
+                    // The atomosLayer became invalid while installing
+                    for (Bundle uninstall : installed)
+                    {
+                        uninstall.uninstall();
+                    }
+                    checkValid(atomosLayer);
+                }
+            }
+        }
+        catch (BundleException | RuntimeException e)
+        {
+            // do not leave contents connected without a bundle
+            disconnectAtomosContents(toConnect.keySet().stream().filter((c) -> {
+                Bundle b = bundles.get(c);
+                return b == null || b.getState() == Bundle.UNINSTALLED;
+            }).collect(Collectors.toList()));
+            throw e;
+        }
+        List<Bundle> result = new ArrayList<>(contents.size());
+        for (AtomosContentBase atomosContent : contents)
+        {
+            Bundle b = bundles.get(atomosContent);
+            if (b != null)
+            {
+                result.add(b);
+            }
+        }
+        return result;
+    }
+
+    private static String getInstallPrefix(String prefix)
     {
         if (prefix == null)
         {
@@ -463,29 +1052,46 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         {
             throw new IllegalArgumentException("The prefix cannot contain ':'");
         }
-        prefix = prefix + ':';
-        debug("Installing atomos content: %s%s", prefix,
-            atomosContent.getAtomosLocation());
+        return prefix + ':';
+    }
 
+    private BundleContext getInstallContext()
+    {
         BundleContext bc = context.get();
         if (bc == null)
         {
             throw new IllegalStateException("Framework has not been initialized.");
         }
+        return bc;
+    }
 
+    private static String getInstallLocation(String prefix, AtomosContentBase atomosContent)
+    {
         String location = atomosContent.getAtomosLocation();
         if (!Constants.SYSTEM_BUNDLE_LOCATION.equals(location))
         {
             location = prefix + location;
         }
+        return location;
+    }
 
-        AtomosLayerBase atomosLayer = (AtomosLayerBase) atomosContent.getAtomosLayer();
+    private static void checkValid(AtomosLayerBase atomosLayer) throws BundleException
+    {
         if (atomosLayer.isNotValid())
         {
             throw new BundleException("Atomos layer has been uninstalled.",
                 BundleException.INVALID_OPERATION);
         }
+    }
 
+    /**
+     * Returns the bundle a content is already installed as, or {@code null} if it is
+     * not installed.
+     * @throws BundleException if the content is installed at another location
+     */
+    private Bundle getInstalledBundle(BundleContext bc, AtomosContentBase atomosContent,
+        String location) throws BundleException
+    {
         String existingLoc = getByAtomosContent(atomosContent);
         if (existingLoc != null)
         {
@@ -504,29 +1110,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                     BundleException.DUPLICATE_BUNDLE_ERROR);
             }
         }
-
-        atomosContent.disconnect();
-        atomosContent.connect(location);
-
-        Bundle result = null;
-        try
-        {
-            result = bc.installBundle(location);
-        }
-        finally
-        {
-            // check if the layer is still valid
-            if (atomosLayer.isNotValid())
-            {
-                // The atomosLayer became invalid while installing
-                if (result != null)
-                {
-                    result.uninstall();
-                    result = null;
-                }
-            }
-        }
-        return result;
+        return null;
     }
 
     final AtomosContent currentlyManagingConnected()
@@ -536,22 +1120,15 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
     final void addManagingConnected(AtomosContentBase atomosBundle, String location)
     {
-        lockWrite();
-        try
-        {
-            connectedLocations.compute(location, (l, a) -> {
-                if (a == null || a == atomosBundle)
-                {
-                    return atomosBundle;
-                }
-                throw new IllegalStateException(
-                    "Atomos connect location is already managed by: " + a);
-            });
-        }
-        finally
-        {
-            unlockWrite();
-        }
+        // a single atomic update of the connected locations; no need for the write lock
+        connectedLocations.compute(location, (l, a) -> {
+            if (a == null || a == atomosBundle)
+            {
+                return atomosBundle;
+            }
+            throw new IllegalStateException(
+                "Atomos connect location is already managed by: " + a);
+        });
         if (context.get() != null)
         {
             managingConnected.get().addLast(atomosBundle);
@@ -580,7 +1157,16 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                     connectionManaged = false;
                 }
                 break;
+            case BundleEvent.STARTING :
+            case BundleEvent.STARTED :
+            case BundleEvent.LAZY_ACTIVATION :
+            case BundleEvent.STOPPING :
+            case BundleEvent.STOPPED :
+                // never start a bundle on demand once it is started or stopped
+                forgetLazy(location);
+                break;
             case BundleEvent.UNINSTALLED :
+                forgetLazy(location);
                 connectionManaged = false;
                 break;
             default:
@@ -589,16 +1175,8 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
         if (!connectionManaged)
         {
-            lockWrite();
-            try
-            {
-                debug("Removing location %s as a connected location.", location);
-                connectedLocations.remove(location);
-            }
-            finally
-            {
-                unlockWrite();
-            }
+            debug("Removing location %s as a connected location.", location);
+            connectedLocations.remove(location);
         }
     }
 
@@ -660,6 +1238,8 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         {
             ((AtomosLayerBase) parent).addChild(atomosLayer);
         }
+        atomosLayer.setLayerIndex(layerIndexes.nextClearBit(0));
+        layerIndexes.set(atomosLayer.getLayerIndex());
     }
 
     abstract protected void addingLayer(AtomosLayerBase atomosLayer);
@@ -676,6 +1256,10 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         private final List<Path> paths;
         private volatile boolean valid = true;
         private volatile Map<String, AtomosContent> nameToBundle;
+        // -1 until the layer is added and after it is removed
+        private volatile int layerIndex = -1;
+        // the indexes of this layer and all its ancestors; never modified once set
+        private volatile BitSet ancestors;
 
         public AtomosLayerBase(List<AtomosLayer> parents, long id, String name, LoaderType loaderType, Path... paths)
         {
@@ -707,6 +1291,56 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             return false;
         }
 
+        final int getLayerIndex()
+        {
+            return layerIndex;
+        }
+
+        /**
+         * Sets the index of this layer and computes the indexes of its ancestors.
+         * Parents are always added before their children and removed after them
+         * so the parent ancestor sets are complete at this point.
+         * @param index the index or -1 if the layer is removed
+         */
+        final void setLayerIndex(int index)
+        {
+            if (index < 0)
+            {
+                layerIndex = -1;
+                ancestors = null;
+                return;
+            }
+            BitSet result = new BitSet();
+            result.set(index);
+            for (AtomosLayer parent : getParents())
+            {
+                BitSet parentAncestors = ((AtomosLayerBase) parent).ancestors;
+                if (parentAncestors != null)
+                {
+                    result.or(parentAncestors);
+                }
+            }
+            ancestors = result;
+            layerIndex = index;
+        }
+
+        /**
+         * Returns true if the specified layer is this layer or one of its ancestors.
+         * @param candidate the candidate layer
+         * @return true if the candidate is in the hierarchy of this layer
+         */
+        final boolean hasAncestor(AtomosLayerBase candidate)
+        {
+            BitSet current = ancestors;
+            int candidateIndex = candidate.layerIndex;
+            if (current == null || candidateIndex < 0)
+            {
+                // one of the layers is not part of the runtime; walk the parents
+                return walkHierarchy(this, candidate);
+            }
+            return current.get(candidateIndex);
+        }
+
         protected final void addChild(AtomosLayerBase child)
         {
             children.add(child);
@@ -734,96 +1368,294 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         protected abstract void findBootModuleLayerAtomosContents(
             Set<AtomosContentBase> result);
 
-        void findAtomosContentsByClassLoaderManifests(Set<AtomosContentBase> result)
-        {
+        /**
+         * Discovers the Atomos contents for each of the specified sources and adds
+         * them to the result in the same order as the sources.  The discoverer may
+         * return {@code null} if a source is not an Atomos content.  If the
+         * {@link AtomosBase#ATOMOS_DISCOVERY_PARALLELISM_PROP discovery parallelism}
+         * is greater than one then the discoverer is called in parallel.
+         * @param sources the sources to discover Atomos contents from
+         * @param discoverer the function to discover an Atomos content from a source
+         * @param result the discovered Atomos contents
+         */
+        protected final <S> void discoverAtomosContents(List<S> sources,
+            Function<S, AtomosContentBase> discoverer, Set<AtomosContentBase> result)
+        {
+            if (discoveryParallelism <= 1 || sources.size() <= 1)
+            {
+                for (S source : sources)
+                {
+                    AtomosContentBase found = discoverer.apply(source);
+                    if (found != null)
+                    {
+                        result.add(found);
+                    }
+                }
+                return;
+            }
+            debug("Discovering %s sources with parallelism %s", sources.size(),
+                discoveryParallelism);
+            ForkJoinPool pool = new ForkJoinPool(discoveryParallelism);
+            try
+            {
+                // the parallel stream runs in the pool that submits it;
+                // collecting to a list keeps the encounter order of the sources
+                List<AtomosContentBase> found = pool.submit(
+                    () -> sources.parallelStream().map(discoverer).collect(
+                        Collectors.toList())).get();
+                for (AtomosContentBase content : found)
+                {
+                    if (content != null)
+                    {
+                        result.add(content);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted discovering Atomos contents.",
+                    e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Error discovering Atomos contents.",
+                    cause);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+
+        void findAtomosContentsByClassLoaderManifests(Set<AtomosContentBase> result)
+        {
+            List<URL> manifests = new ArrayList<>();
+            try
+            {
+                ClassLoader cl = getClass().getClassLoader();
+                Set<URL> parentManifests = new HashSet<>();
+                if (cl.getParent() != null)
+                {
+                    Enumeration<URL> eParentManifests = cl.getParent().getResources(
+                        JarFile.MANIFEST_NAME);
+                    while (eParentManifests.hasMoreElements())
+                    {
+                        parentManifests.add(eParentManifests.nextElement());
+                    }
+                }
+                Enumeration<URL> classpathManifests = cl.getResources(
+                    JarFile.MANIFEST_NAME);
+                while (classpathManifests.hasMoreElements())
+                {
+                    URL manifestURL = classpathManifests.nextElement();
+                    if (parentManifests.contains(manifestURL))
+                    {
+                        // ignore parent manifests
+                        continue;
+                    }
+                    manifests.add(manifestURL);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Error finding class path bundles.", e);
+            }
+            try
+            {
+                discoverAtomosContents(manifests, this::findAtomosContentByManifest,
+                    result);
+            }
+            catch (UncheckedIOException e)
+            {
+                throw new IllegalStateException("Error finding class path bundles.",
+                    e.getCause());
+            }
+        }
+
+        private AtomosContentBase findAtomosContentByManifest(URL manifestURL)
+        {
+            File jarFile = discoverySnapshot == null ? null : getJarFile(manifestURL);
+            ContentSnapshot snapshot = jarFile == null ? null : findSnapshot(jarFile);
+            if (snapshot != null)
+            {
+                ManifestHolder holder = new ManifestHolder();
+                holder.setHeaders(Optional.of(snapshot.headers));
+                try
+                {
+                    return new AtomosContentClassPath(snapshot.location,
+                        snapshot.symbolicName, Version.parseVersion(snapshot.version),
+                        new ConnectContentJar(openOnDemand(manifestURL),
+                            (dontClose) -> {}, holder::getHeaders),
+                        jarFile.toURI().toURL(), snapshot.source);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            Object content = getBundleContent(manifestURL);
+            if (content == null)
+            {
+                return null;
+            }
+            ContentSource source = content instanceof JarFile
+                ? newContentSource(new File(((JarFile) content).getName()))
+                : null;
+            ManifestHolder holder = new ManifestHolder();
+
+            ConnectContent connectContent;
+            URL url;
             try
             {
-                ClassLoader cl = getClass().getClassLoader();
-                Set<URL> parentManifests = new HashSet<>();
-                if (cl.getParent() != null)
+                if (content instanceof File)
                 {
-                    Enumeration<URL> eParentManifests = cl.getParent().getResources(
-                        JarFile.MANIFEST_NAME);
-                    while (eParentManifests.hasMoreElements())
-                    {
-                        parentManifests.add(eParentManifests.nextElement());
-                    }
+                    connectContent = new ConnectContentFile((File) content,
+                        holder::getHeaders, directorySnapshot);
+                    url = ((File) content).toURI().toURL();
                 }
-                Enumeration<URL> classpathManifests = cl.getResources(
-                    JarFile.MANIFEST_NAME);
-                while (classpathManifests.hasMoreElements())
+                else
                 {
-                    URL manifestURL = classpathManifests.nextElement();
-                    if (parentManifests.contains(manifestURL))
-                    {
-                        // ignore parent manifests
-                        continue;
-                    }
+                    connectContent = new ConnectContentJar(
+                            () -> ((JarFile) content), //
+                            (dontClose) -> {}, //
+                            holder::getHeaders);
+                    url = new File(
+                            ((JarFile) content).getName()).toURI().toURL();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
 
-                    Object content = getBundleContent(manifestURL);
-                    if (content != null)
-                    {
-                        ManifestHolder holder = new ManifestHolder();
+            String location;
+            if (connectContent.getEntry(
+                    "META-INF/services/org.osgi.framework.launch.FrameworkFactory").isPresent())
+            {
+                location = Constants.SYSTEM_BUNDLE_LOCATION;
+            }
+            else
+            {
+                location = content instanceof File
+                        ? ((File) content).getPath()
+                        : ((JarFile) content).getName();
+                if (!getName().isEmpty())
+                {
+                    location = getName() + ":" + location;
+                }
+            }
 
-                        ConnectContent connectContent;
-                        URL url;
-                        if (content instanceof File)
-                        {
-                            connectContent = new ConnectContentFile((File) content, holder::getHeaders);
-                            url = ((File) content).toURI().toURL();
-                        }
-                        else
-                        {
-                            connectContent = new ConnectContentJar(
-                                    () -> ((JarFile) content), //
-                                    (dontClose) -> {}, //
-                                    holder::getHeaders);
-                            url = new File(
-                                    ((JarFile) content).getName()).toURI().toURL();
-                        }
+            Map<String, String> headers = getRawHeaders(connectContent);
+            headers = applyHeaderProvider(holder, location, headers);
 
-                        String location;
-                        if (connectContent.getEntry(
-                                "META-INF/services/org.osgi.framework.launch.FrameworkFactory").isPresent())
-                        {
-                            location = Constants.SYSTEM_BUNDLE_LOCATION;
-                        }
-                        else
-                        {
-                            location = content instanceof File
-                                    ? ((File) content).getPath()
-                                    : ((JarFile) content).getName();
-                            if (!getName().isEmpty())
-                            {
-                                location = getName() + ":" + location;
-                            }
-                        }
+            String symbolicName = headers.get(Constants.BUNDLE_SYMBOLICNAME);
+            if (symbolicName == null)
+            {
+                return null;
+            }
+            int semiColon = symbolicName.indexOf(';');
+            if (semiColon != -1)
+            {
+                symbolicName = symbolicName.substring(0, semiColon);
+            }
+            symbolicName = symbolicName.trim();
 
-                        Map<String, String> headers = getRawHeaders(connectContent);
-                        headers = applyHeaderProvider(holder, location, headers);
+            Version version = Version.parseVersion(headers.get(Constants.BUNDLE_VERSION));
 
-                        String symbolicName = headers.get(Constants.BUNDLE_SYMBOLICNAME);
-                        if (symbolicName != null)
-                        {
-                            int semiColon = symbolicName.indexOf(';');
-                            if (semiColon != -1)
-                            {
-                                symbolicName = symbolicName.substring(0, semiColon);
-                            }
-                            symbolicName = symbolicName.trim();
+            return new AtomosContentClassPath(location, symbolicName,
+                    version, connectContent, url, source);
+        }
 
-                            Version version = Version.parseVersion(headers.get(Constants.BUNDLE_VERSION));
+        /**
+         * Returns the JAR file for a manifest URL of a JAR on the file system.
+         * @param manifest the manifest URL
+         * @return the JAR file or {@code null} if the manifest is not contained in a JAR file
+         */
+        private File getJarFile(URL manifest)
+        {
+            if (!JAR_PROTOCOL.equals(manifest.getProtocol()))
+            {
+                return null;
+            }
+            String spec = manifest.getPath();
+            int separator = spec.indexOf("!/");
+            // nested JARs (e.g. spring loader) have more than one separator
+            if (separator < 0 || spec.indexOf("!/", separator + 2) >= 0)
+            {
+                return null;
+            }
+            try
+            {
+                URL jarURL = new URL(spec.substring(0, separator));
+                return FILE_PROTOCOL.equals(jarURL.getProtocol())
+                    ? new File(jarURL.toURI())
+                    : null;
+            }
+            catch (MalformedURLException | URISyntaxException
+                | IllegalArgumentException e)
+            {
+                return null;
+            }
+        }
 
-                            result.add(new AtomosContentClassPath(location, symbolicName,
-                                    version, connectContent, url));
-                        }
+        private Supplier<ZipFile> openOnDemand(URL manifestURL)
+        {
+            AtomicReference<ZipFile> jar = new AtomicReference<>();
+            return () -> {
+                ZipFile current = jar.get();
+                if (current == null)
+                {
+                    Object content = getBundleContent(manifestURL);
+                    if (!(content instanceof JarFile))
+                    {
+                        throw new IllegalStateException(
+                            "Unable to open bundle content: " + manifestURL);
                     }
+                    current = (ZipFile) content;
+                    jar.set(current);
                 }
+                return current;
+            };
+        }
+
+        /**
+         * Returns the discovery snapshot of a file if the file is unchanged since
+         * the snapshot was saved.
+         * @param file the file an Atomos content is discovered from
+         * @return the snapshot or {@code null} if there is no valid snapshot
+         */
+        private ContentSnapshot findSnapshot(File file)
+        {
+            if (discoverySnapshot == null)
+            {
+                return null;
             }
-            catch (IOException e)
+            Map<String, ContentSnapshot> layerSnapshot = discoverySnapshot.get(getId());
+            ContentSnapshot snapshot = layerSnapshot == null ? null
+                : layerSnapshot.get(file.getPath());
+            if (snapshot != null && snapshot.source.isUnchanged(file))
             {
-                throw new IllegalStateException("Error finding class path bundles.", e);
+                debug("Using discovery snapshot for %s", file);
+                return snapshot;
             }
+            return null;
+        }
+
+        private ContentSource newContentSource(File file)
+        {
+            return discoverySnapshot != null && file.isFile() ? new ContentSource(file)
+                : null;
         }
 
         private void findAtomosIndexedContents(Set<AtomosContentBase> bootBundles)
@@ -849,70 +1681,92 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         private void findAtomosLibIndexedContent(Set<AtomosContentBase> bootBundles,
             File atomosLibDir)
         {
+            List<File> files = new ArrayList<>();
             for (File f : atomosLibDir.listFiles())
             {
                 if (f.isFile())
                 {
-                    try (JarFile jar = new JarFile(f))
-                    {
-                            ManifestHolder holder = new ManifestHolder();
+                    files.add(f);
+                }
+            }
+            discoverAtomosContents(files, f -> findAtomosLibContent(f, atomosLibDir),
+                bootBundles);
+        }
 
-                            ConnectContent connectContent = new ConnectContentCloseableJar(
-                                f.getName(), () -> atomosLibDir, holder::getHeaders);
-                            connectContent.open();
-                            String location;
-                            try
-                            {
-                                if (connectContent.getEntry(
-                                    "META-INF/services/org.osgi.framework.launch.FrameworkFactory").isPresent())
-                                {
-                                    location = Constants.SYSTEM_BUNDLE_LOCATION;
-                                }
-                                else
-                                {
-                                    location = f.getName();
-                                    if (!getName().isEmpty())
-                                    {
-                                        location = getName() + ":" + location;
-                                    }
-                                }
-                            }
-                            finally
-                            {
-                                connectContent.close();
-                            }
-                            Map<String, String> headers = toMap(jar.getManifest());
-                            headers = applyHeaderProvider(holder, location, headers);
+        private AtomosContentBase findAtomosLibContent(File f, File atomosLibDir)
+        {
+            ContentSnapshot snapshot = findSnapshot(f);
+            if (snapshot != null)
+            {
+                ManifestHolder holder = new ManifestHolder();
+                holder.setHeaders(Optional.of(snapshot.headers));
+                return new AtomosContentIndexed(snapshot.location, snapshot.symbolicName,
+                    Version.parseVersion(snapshot.version),
+                    new ConnectContentCloseableJar(f.getName(), () -> atomosLibDir,
+                        libZipFiles, mapArchives, holder::getHeaders),
+                    snapshot.source);
+            }
+            ContentSource source = newContentSource(f);
+            try (JarFile jar = new JarFile(f))
+            {
+                    ManifestHolder holder = new ManifestHolder();
 
-                            String symbolicName = headers.get(
-                                    Constants.BUNDLE_SYMBOLICNAME);
-                            if (symbolicName != null)
+                    ConnectContent connectContent = new ConnectContentCloseableJar(
+                        f.getName(), () -> atomosLibDir, libZipFiles, mapArchives,
+                        holder::getHeaders);
+                    connectContent.open();
+                    String location;
+                    try
+                    {
+                        if (connectContent.getEntry(
+                            "META-INF/services/org.osgi.framework.launch.FrameworkFactory").isPresent())
+                        {
+                            location = Constants.SYSTEM_BUNDLE_LOCATION;
+                        }
+                        else
+                        {
+                            location = f.getName();
+                            if (!getName().isEmpty())
                             {
-                                int semiColon = symbolicName.indexOf(';');
-                                if (semiColon != -1)
-                                {
-                                    symbolicName = symbolicName.substring(0, semiColon);
-                                }
-                                symbolicName = symbolicName.trim();
-
-                                Version version = Version.parseVersion(
-                                    headers.get(Constants.BUNDLE_VERSION));
-                                AtomosContentBase bundle = new AtomosContentIndexed(location,
-                                    symbolicName, version, connectContent);
-                                bootBundles.add(bundle);
+                                location = getName() + ":" + location;
                             }
+                        }
                     }
-                    catch (IOException e)
+                    finally
                     {
-                        // ignore and continue
+                        connectContent.close();
                     }
-                }
+                    Map<String, String> headers = toMap(jar.getManifest());
+                    headers = applyHeaderProvider(holder, location, headers);
+
+                    String symbolicName = headers.get(
+                            Constants.BUNDLE_SYMBOLICNAME);
+                    if (symbolicName != null)
+                    {
+                        int semiColon = symbolicName.indexOf(';');
+                        if (semiColon != -1)
+                        {
+                            symbolicName = symbolicName.substring(0, semiColon);
+                        }
+                        symbolicName = symbolicName.trim();
+
+                        Version version = Version.parseVersion(
+                            headers.get(Constants.BUNDLE_VERSION));
+                        return new AtomosContentIndexed(location,
+                            symbolicName, version, connectContent, source);
+                    }
+            }
+            catch (IOException e)
+            {
+                // ignore and continue
             }
+            return null;
         }
 
         private AtomosContentIndexed createIndexedContent(String indexRoot,
             String currentIndex,
-            String currentBSN, Version currentVersion, List<String> currentPaths)
+            String currentBSN, Version currentVersion, Set<String> currentPaths,
+            Collection<String> currentPackages)
         {
             ManifestHolder holder = new ManifestHolder();
             String bundleIndexPath = indexRoot + currentIndex;
@@ -942,7 +1796,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                     headers.get(Constants.BUNDLE_VERSION));
             }
             return new AtomosContentIndexed(location, currentBSN, currentVersion,
-                content);
+                content, null, currentPackages);
         }
 
         private void findAtomosIndexedContent(URL index,
@@ -950,25 +1804,56 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         {
             final String indexRoot = indexPath.substring(0,
                 indexPath.lastIndexOf('/') + 1);
+            List<IndexedBundle> indexedBundles;
+            try
+            {
+                BinaryIndex binaryIndex = BinaryIndex.open(index);
+                indexedBundles = binaryIndex == null ? readTextIndex(index)
+                    : readBinaryIndex(binaryIndex);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+            discoverAtomosContents(indexedBundles,
+                b -> createIndexedContent(indexRoot, b.index, b.symbolicName,
+                    b.version, b.paths, b.packages),
+                bootBundles);
+        }
+
+        private List<IndexedBundle> readBinaryIndex(BinaryIndex binaryIndex)
+        {
+            List<IndexedBundle> indexedBundles = new ArrayList<>();
+            for (BinaryIndex.IndexedBundle b : binaryIndex.getBundles())
+            {
+                indexedBundles.add(new IndexedBundle(b.getIndex(), b.getSymbolicName(),
+                    Version.valueOf(b.getVersion()), b.getEntries(), b.getPackages()));
+            }
+            return indexedBundles;
+        }
+
+        private List<IndexedBundle> readTextIndex(URL index) throws IOException
+        {
+            List<IndexedBundle> indexedBundles = new ArrayList<>();
             try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(index.openStream())))
             {
                 String currentIndex = null;
                 String currentBSN = null;
                 Version currentVersion = null;
-                List<String> currentPaths = null;
+                Set<String> currentPaths = null;
                 String line = reader.readLine();
                 while (ATOMOS_BUNDLE.equals(line))
                 {
                     if (currentIndex != null)
                     {
-                        bootBundles.add(createIndexedContent(indexRoot, currentIndex,
+                        indexedBundles.add(new IndexedBundle(currentIndex,
                             currentBSN, currentVersion, currentPaths));
                     }
                     currentIndex = null;
                     currentBSN = null;
                     currentVersion = null;
-                    currentPaths = new ArrayList<>();
+                    currentPaths = new LinkedHashSet<>();
                     while ((line = reader.readLine()) != null
                         && !ATOMOS_BUNDLE.equals(line))
                     {
@@ -992,13 +1877,44 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                 }
                 if (currentIndex != null)
                 {
-                    bootBundles.add(createIndexedContent(indexRoot, currentIndex,
+                    indexedBundles.add(new IndexedBundle(currentIndex,
                         currentBSN, currentVersion, currentPaths));
                 }
             }
-            catch (IOException e)
+            // share one compact table of the entry paths between all indexed contents
+            FrontCodedPaths paths = new FrontCodedPaths(indexedBundles.stream().flatMap(
+                b -> b.paths.stream()).collect(Collectors.toList()));
+            return indexedBundles.stream().map(
+                b -> new IndexedBundle(b.index, b.symbolicName, b.version,
+                    paths.getEntries(b.paths))).collect(Collectors.toList());
+        }
+
+        /**
+         * A bundle read from the Atomos index
+         */
+        private final class IndexedBundle
+        {
+            final String index;
+            final String symbolicName;
+            final Version version;
+            final Set<String> paths;
+            // null if the index has no packages
+            final Collection<String> packages;
+
+            IndexedBundle(String index, String symbolicName, Version version,
+                Set<String> paths)
             {
-                throw new RuntimeException(e);
+                this(index, symbolicName, version, paths, null);
+            }
+
+            IndexedBundle(String index, String symbolicName, Version version,
+                Set<String> paths, Collection<String> packages)
+            {
+                this.index = index;
+                this.symbolicName = symbolicName;
+                this.version = version;
+                this.paths = paths;
+                this.packages = packages;
             }
         }
 
@@ -1106,6 +2022,12 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             return loaderType;
         }
 
+        @Override
+        public final List<Bundle> installAll(String prefix) throws BundleException
+        {
+            return installAtomosContents(prefix, this);
+        }
+
         @Override
         public final void uninstall() throws BundleException
         {
@@ -1147,6 +2069,12 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             }
             getAtomosContents().forEach(AtomosContent::disconnect);
             idToLayer.remove(getId());
+            int index = layerIndex;
+            if (index >= 0)
+            {
+                setLayerIndex(-1);
+                layerIndexes.clear(index);
+            }
             removedLayer(this);
         }
 
@@ -1318,9 +2246,19 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                 return version;
             }
 
+            @SuppressWarnings("unchecked")
             @Override
             public <T> Optional<T> adapt(Class<T> type)
             {
+                if (DirectoryListing.class.equals(type))
+                {
+                    ConnectContent content = getConnectContent();
+                    if (content instanceof ConnectContentJar)
+                    {
+                        return Optional.of(
+                            (T) ((ConnectContentJar) content).getDirectoryListing());
+                    }
+                }
                 return Optional.empty();
             }
 
@@ -1408,6 +2346,15 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             {
                 disconnectAtomosContent(this);
             }
+
+            /**
+             * The file this content was discovered from, used for the discovery snapshot.
+             * @return the content source or {@code null} if not discovered from a file
+             */
+            ContentSource getContentSource()
+            {
+                return null;
+            }
         }
 
         /**
@@ -1419,11 +2366,18 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         {
 
             private final URL contentURL;
+            private final ContentSource source;
 
             public AtomosContentClassPath(String location, String symbolicName, Version version, ConnectContent connectContent, URL url)
+            {
+                this(location, symbolicName, version, connectContent, url, null);
+            }
+
+            AtomosContentClassPath(String location, String symbolicName, Version version, ConnectContent connectContent, URL url, ContentSource source)
             {
                 super(location, symbolicName, version, connectContent);
                 this.contentURL = url;
+                this.source = source;
             }
 
             @Override
@@ -1431,6 +2385,12 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             {
                 return contentURL;
             }
+
+            @Override
+            final ContentSource getContentSource()
+            {
+                return source;
+            }
         }
 
         /**
@@ -1439,10 +2399,39 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
          */
         public class AtomosContentIndexed extends AtomosContentBase
         {
+            private final ContentSource source;
+            private final Collection<String> packages;
 
             public AtomosContentIndexed(String location, String symbolicName, Version version, ConnectContent content)
+            {
+                this(location, symbolicName, version, content, null);
+            }
+
+            AtomosContentIndexed(String location, String symbolicName, Version version, ConnectContent content, ContentSource source)
+            {
+                this(location, symbolicName, version, content, source, null);
+            }
+
+            AtomosContentIndexed(String location, String symbolicName, Version version, ConnectContent content, ContentSource source, Collection<String> packages)
             {
                 super(location, symbolicName, version, content);
+                this.source = source;
+                this.packages = packages;
+            }
+
+            @Override
+            final ContentSource getContentSource()
+            {
+                return source;
+            }
+
+            /**
+             * The packages of this content as computed when the index was built.
+             * @return the packages or {@code null} if the index has no packages
+             */
+            final Collection<String> getIndexedPackages()
+            {
+                return packages;
             }
 
             @Override
@@ -1509,22 +2498,69 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
             BundleContext bc = context.get();
             if (bc != null)
             {
+                activateLazy(location);
                 return Optional.ofNullable(bc.getBundle(location));
             }
         }
         return Optional.empty();
     }
 
-    protected final String getConnectLocation(Class<?> classFromBundle)
+    /**
+     * Schedules the start of the bundle connected at the location if Atomos
+     * contents are started on demand and the bundle has not been started yet.
+     * The bundle is started on another thread.
+     * @param location the connect location
+     */
+    protected final void activateLazy(String location)
     {
-        lockRead();
-        try
+        AtomosLazyActivator lazy = lazyActivator;
+        if (lazy != null)
         {
-            return atomosKeyToConnectLocation.get(getAtomosKey(classFromBundle));
+            lazy.activate(location);
         }
-        finally
+    }
+
+    private void forgetLazy(String location)
+    {
+        AtomosLazyActivator lazy = lazyActivator;
+        if (lazy != null)
+        {
+            lazy.remove(location);
+        }
+    }
+
+    protected final String getConnectLocation(Class<?> classFromBundle)
+    {
+        awaitBootLayer();
+        // read the generation before computing so that a concurrent change
+        // leaves behind a cached location that is already out of date
+        long generation = locationGeneration.get();
+        CachedLocationHolder holder = classToConnectLocation.get(classFromBundle);
+        CachedLocation cached = holder.cached;
+        if (cached != null && cached.generation == generation)
+        {
+            return cached.location;
+        }
+        Object key = getAtomosKey(classFromBundle);
+        String location = key == null ? null : atomosKeyToConnectLocation.get(key);
+        holder.cached = new CachedLocation(generation, location);
+        return location;
+    }
+
+    static final class CachedLocationHolder
+    {
+        volatile CachedLocation cached;
+    }
+
+    static final class CachedLocation
+    {
+        final long generation;
+        final String location;
+
+        CachedLocation(long generation, String location)
         {
-            unlockRead();
+            this.generation = generation;
+            this.location = location;
         }
     }
 
@@ -1544,24 +2580,27 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
     protected abstract void filterBasedOnReadEdges(
         AtomosContent atomosContent,
-        Collection<BundleCapability> candidates);
+        Collection<BundleCapability> candidates,
+        AtomosResolverHook resolve);
 
     protected final void filterNotVisible(
         AtomosContent atomosContent,
-        Collection<BundleCapability> candidates)
+        Collection<BundleCapability> candidates,
+        AtomosResolverHook resolve)
     {
         if (atomosContent != null)
         {
-            candidates.removeIf(candidate -> !isVisible(atomosContent, candidate));
+            candidates.removeIf(candidate -> !isVisible(atomosContent, candidate, resolve));
         }
     }
 
     private boolean isVisible(
         AtomosContent atomosContent,
-        BundleCapability candidate)
+        BundleCapability candidate,
+        AtomosResolverHook resolve)
     {
-        AtomosContent candidateAtomos = getByConnectLocation(
-            candidate.getRevision().getBundle().getLocation(), true);
+        AtomosContent candidateAtomos = resolve.getAtomosContent(
+            candidate.getRevision().getBundle());
         if (candidateAtomos == null)
         {
             // atomos connected content cannot see normal bundles
@@ -1575,6 +2614,15 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
     }
 
     final boolean isInLayerHierarchy(AtomosLayer thisLayer, AtomosLayer candLayer)
+    {
+        if (thisLayer instanceof AtomosLayerBase && candLayer instanceof AtomosLayerBase)
+        {
+            return ((AtomosLayerBase) thisLayer).hasAncestor((AtomosLayerBase) candLayer);
+        }
+        return walkHierarchy(thisLayer, candLayer);
+    }
+
+    static boolean walkHierarchy(AtomosLayer thisLayer, AtomosLayer candLayer)
     {
         if (thisLayer.equals(candLayer))
         {
@@ -1582,7 +2630,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         }
         for (AtomosLayer parent : thisLayer.getParents())
         {
-            if (isInLayerHierarchy(parent, candLayer))
+            if (walkHierarchy(parent, candLayer))
             {
                 return true;
             }
@@ -1627,10 +2675,30 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
         boolean installBundles = Boolean.parseBoolean(
             getProperty(bc, Atomos.ATOMOS_CONTENT_INSTALL, "true"));
-        boolean startBundles = Boolean.parseBoolean(
-            getProperty(bc, Atomos.ATOMOS_CONTENT_START, "true"));
+        String start = getProperty(bc, Atomos.ATOMOS_CONTENT_START, "true");
+        boolean startLazy = Atomos.ATOMOS_CONTENT_START_LAZY.equalsIgnoreCase(start);
+        boolean startBundles = startLazy || Boolean.parseBoolean(start);
+        if (startLazy)
+        {
+            debug("Starting Atomos content on demand.");
+            lazyActivator = new AtomosLazyActivator(this::startBundle);
+            lazyActivatorReg = bc.registerService(
+                new String[] { FindHook.class.getName(), ListenerHook.class.getName() },
+                lazyActivator, null);
+        }
+        boolean tiered = startBundles && !startLazy;
+        if (!tiered && !startTierPatterns.isEmpty())
+        {
+            debug("Ignoring start tiers, Atomos content is not started eagerly: %s",
+                start);
+        }
+        AtomosStartTiers tiers = new AtomosStartTiers(startTierPatterns,
+            this::startBundles);
+        startTiers = tiers;
         installAtomosContents(getBootLayer(), installBundles, startBundles);
-        atomosReg = bc.registerService(Atomos.class, this, null);
+        atomosReg = bc.registerService(Atomos.class, this,
+            tiered ? tiers.getProperties() : null);
+        tiers.startDeferred(atomosReg);
         atomosCommandsReg = new AtomosCommands(this).register(bc);
     }
 
@@ -1655,6 +2723,14 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                         (AtomosContentIndexed) atomosContent);
                 }
             }
+            else if (((AtomosContentIndexed) atomosContent).getIndexedPackages() != null)
+            {
+                // use the packages computed when the index was built
+                for (String pkg : ((AtomosContentIndexed) atomosContent).getIndexedPackages())
+                {
+                    packageToAtomosContent.put(pkg, (AtomosContentIndexed) atomosContent);
+                }
+            }
             else
             {
                 // ensure content is open
@@ -1679,6 +2755,7 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
                     debug("IOException getting entries: %s", e.getMessage());
                 }
             }
+            locationGeneration.incrementAndGet();
         }
     }
     protected void stop(BundleContext bc) throws BundleException
@@ -1704,8 +2781,16 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         bc.removeFrameworkListener(this);
 
         AtomosFrameworkUtilHelper.removeHelper(this);
+        startTiers.stop(STOP_TIMEOUT);
         atomosCommandsReg.unregister();
         atomosReg.unregister();
+        AtomosLazyActivator lazy = lazyActivator;
+        if (lazy != null)
+        {
+            lazyActivator = null;
+            lazyActivatorReg.unregister();
+            lazy.close();
+        }
     }
 
     private String getProperty(BundleContext bc, String key, String defaultValue)
@@ -1745,23 +2830,16 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
 
             if (startBundles)
             {
-                for (Bundle b : bundles)
+                AtomosLazyActivator lazy = lazyActivator;
+                if (lazy != null)
                 {
-                    debug("Starting connected bundle: %s", b);
-                    BundleRevision rev = b.adapt(BundleRevision.class);
-                    if ((rev.getTypes() & BundleRevision.TYPE_FRAGMENT) == 0)
-                    {
-                        try
-                        {
-                            b.start();
-                        }
-                        catch (BundleException e)
-                        {
-                            debug("Failed to install to install %s: %s", e,
-                                b,
-                                e.getMessage());
-                        }
-                    }
+                    // bundles that cannot be triggered are started now
+                    startBundles(bundles.stream().filter((b) -> !lazy.add(b)).collect(
+                        Collectors.toList()));
+                }
+                else
+                {
+                    startBundles(startTiers.defer(bundles));
                 }
                 for (AtomosLayer child : atomosLayer.getChildren())
                 {
@@ -1771,8 +2849,64 @@ public abstract class AtomosBase implements Atomos, SynchronousBundleListener, F
         }
     }
 
+    private void startBundle(Bundle b)
+    {
+        if (context.get() == null)
+        {
+            debug("Atomos is stopped, not starting connected bundle: %s", b);
+            return;
+        }
+        debug("Starting connected bundle: %s", b);
+        BundleRevision rev = b.adapt(BundleRevision.class);
+        if ((rev.getTypes() & BundleRevision.TYPE_FRAGMENT) == 0)
+        {
+            try
+            {
+                b.start();
+            }
+            catch (BundleException e)
+            {
+                debug("Failed to install to install %s: %s", e,
+                    b,
+                    e.getMessage());
+            }
+        }
+    }
+
+    private void startBundles(List<Bundle> bundles)
+    {
+        if (startParallelism > 1 && bundles.size() > 1)
+        {
+            startBundlesInParallel(bundles);
+        }
+        else
+        {
+            bundles.forEach(this::startBundle);
+        }
+    }
+
+    private void startBundlesInParallel(List<Bundle> bundles)
+    {
+        debug("Starting %s connected bundles with parallelism %s", bundles.size(),
+            startParallelism);
+        BundleContext bc = context.get();
+        if (bc == null)
+        {
+            throw new IllegalStateException("Atomos is stopped.");
+        }
+        // resolve all bundles at once so the waves can be computed from their wiring
+        bc.getBundle(Constants.SYSTEM_BUNDLE_LOCATION).adapt(
+            FrameworkWiring.class).resolveBundles(bundles);
+        List<Bundle> hosts = bundles.stream().filter(
+            (b) -> (b.adapt(BundleRevision.class).getTypes()
+                & BundleRevision.TYPE_FRAGMENT) == 0).collect(Collectors.toList());
+        new AtomosBundleStarter(startParallelism, startThreads, this::startBundle).start(
+            hosts);
+    }
+
     public void initialize(File storage, Map<String, String> configuration)
     {
+        awaitBootLayer();
         saveConfig(configuration);
         if (!storeRoot.compareAndSet(null, storage))
         {
@@ -0,0 +1,201 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Starts bundles in waves.  A bundle is started in a wave after the waves that
+ * start the bundles providing its wires; the bundles of one wave are started in
+ * parallel.
+ */
+class AtomosBundleStarter
+{
+    static final String THREADS_PLATFORM = "platform";
+    static final String THREADS_VIRTUAL = "virtual";
+
+    private final int parallelism;
+    private final String threads;
+    private final Consumer<Bundle> starter;
+
+    /**
+     * Creates a starter.
+     * @param parallelism the maximum number of bundles started at the same time
+     * @param threads {@link #THREADS_PLATFORM} or {@link #THREADS_VIRTUAL}
+     * @param starter starts one bundle and reports its failures
+     */
+    AtomosBundleStarter(int parallelism, String threads, Consumer<Bundle> starter)
+    {
+        this.parallelism = parallelism;
+        this.threads = threads;
+        this.starter = starter;
+    }
+
+    /**
+     * Starts resolved bundles.  The bundles of a wave are started in the order
+     * of the list.
+     * @param bundles the bundles to start
+     */
+    void start(List<Bundle> bundles)
+    {
+        List<List<Bundle>> waves = schedule(bundles);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+            newThreadFactory());
+        try
+        {
+            for (List<Bundle> wave : waves)
+            {
+                if (wave.size() == 1)
+                {
+                    starter.accept(wave.get(0));
+                    continue;
+                }
+                List<Future<?>> started = new ArrayList<>(wave.size());
+                for (Bundle b : wave)
+                {
+                    started.add(executor.submit(() -> starter.accept(b)));
+                }
+                for (Future<?> f : started)
+                {
+                    f.get();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted starting bundles.", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Error starting bundles.", cause);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Orders bundles into waves using their wiring.  A bundle is put in the wave
+     * after the last wave with a bundle providing one of its wires.  Bundles
+     * without wiring are put in the first wave.  A cycle of wires is broken by
+     * putting the first bundle of the cycle in a wave of its own.
+     * @param bundles the bundles in their start order
+     * @return the waves
+     */
+    static List<List<Bundle>> schedule(List<Bundle> bundles)
+    {
+        Set<Bundle> toStart = new HashSet<>(bundles);
+        Map<Bundle, Set<Bundle>> providers = new HashMap<>();
+        for (Bundle b : bundles)
+        {
+            Set<Bundle> bundleProviders = new HashSet<>();
+            BundleWiring wiring = b.adapt(BundleWiring.class);
+            if (wiring != null)
+            {
+                for (BundleWire wire : wiring.getRequiredWires(null))
+                {
+                    Bundle provider = wire.getProvider().getBundle();
+                    if (provider != b && toStart.contains(provider))
+                    {
+                        bundleProviders.add(provider);
+                    }
+                }
+            }
+            providers.put(b, bundleProviders);
+        }
+
+        List<List<Bundle>> waves = new ArrayList<>();
+        Set<Bundle> scheduled = new HashSet<>();
+        List<Bundle> remaining = new ArrayList<>(bundles);
+        while (!remaining.isEmpty())
+        {
+            List<Bundle> wave = new ArrayList<>();
+            for (Bundle b : remaining)
+            {
+                if (scheduled.containsAll(providers.get(b)))
+                {
+                    wave.add(b);
+                }
+            }
+            if (wave.isEmpty())
+            {
+                wave.add(remaining.get(0));
+            }
+            waves.add(wave);
+            scheduled.addAll(wave);
+            remaining.removeIf(scheduled::contains);
+        }
+        return waves;
+    }
+
+    private ThreadFactory newThreadFactory()
+    {
+        ThreadFactory factory = THREADS_VIRTUAL.equals(threads) ? newVirtualThreadFactory()
+            : null;
+        if (factory != null)
+        {
+            return factory;
+        }
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "Atomos bundle start " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static ThreadFactory newVirtualThreadFactory()
+    {
+        // virtual threads are found reflectively because Atomos runs on Java 8
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(
+                builder, "Atomos bundle start ", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
@@ -26,20 +26,20 @@ import java.util.Set;
 import org.apache.felix.atomos.AtomosContent;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.AtomosLayer.LoaderType;
+import org.apache.felix.atomos.impl.base.AtomosFrameworkHooks.AtomosResolverHook;
 import org.osgi.framework.connect.ConnectFrameworkFactory;
 import org.osgi.framework.wiring.BundleCapability;
 
 public class AtomosClassPath extends AtomosBase
 {
 
-    private final AtomosLayer bootLayer = createBootLayer();
-
     public AtomosClassPath(Map<String, String> config, HeaderProvider headerProvider)
     {
         super(config, headerProvider);
     }
 
-    private AtomosLayer createBootLayer()
+    @Override
+    protected AtomosLayer createBootLayer()
     {
         lockWrite();
         try
@@ -69,9 +69,9 @@ public class AtomosClassPath extends AtomosBase
 
     @Override
     protected void filterBasedOnReadEdges(AtomosContent atomosContent,
-        Collection<BundleCapability> candidates)
+        Collection<BundleCapability> candidates, AtomosResolverHook resolve)
     {
-        filterNotVisible(atomosContent, candidates);
+        filterNotVisible(atomosContent, candidates, resolve);
     }
 
     public class AtomosLayerClassPath extends AtomosLayerBase
@@ -97,12 +97,6 @@ public class AtomosClassPath extends AtomosBase
         }
     }
 
-    @Override
-    public AtomosLayer getBootLayer()
-    {
-        return bootLayer;
-    }
-
     @Override
     protected void addingLayer(AtomosLayerBase atomosLayer)
     {
@@ -14,7 +14,6 @@
 package org.apache.felix.atomos.impl.base;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
@@ -26,6 +25,7 @@ import java.util.stream.Stream;
 import org.apache.felix.atomos.AtomosContent;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.AtomosLayer.LoaderType;
+import org.apache.felix.atomos.AtomosLayer.LookupMissStatistics;
 import org.apache.felix.service.command.Descriptor;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -63,6 +63,9 @@ public class AtomosCommands
         if (visited.add(layer))
         {
             System.out.println(layer.toString());
+            layer.adapt(LookupMissStatistics.class).ifPresent((m) -> System.out.println(
+                " MISS CACHE: " + m.size() + " names, " + m.getHits() + " hits, "
+                    + m.getMisses() + " misses"));
             Set<AtomosContent> contents = layer.getAtomosContents();
             if (!contents.isEmpty())
             {
@@ -133,11 +136,7 @@ public class AtomosCommands
         AtomosLayer layer = runtime.getBootLayer().addLayer(name, oLoaderType.get(),
             moduleDir.toPath());
 
-        List<Bundle> bundles = new ArrayList<>();
-        for (final AtomosContent atomosBundle : layer.getAtomosContents())
-        {
-            bundles.add(atomosBundle.install());
-        }
+        List<Bundle> bundles = layer.installAll();
         for (final Bundle b : bundles)
         {
             b.start();
@@ -15,6 +15,10 @@ package org.apache.felix.atomos.impl.base;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
 
 import org.apache.felix.atomos.AtomosContent;
 import org.osgi.framework.Bundle;
@@ -29,8 +33,47 @@ import org.osgi.framework.wiring.BundleRevision;
 
 public class AtomosFrameworkHooks implements ResolverHookFactory, CollisionHook
 {
+    /**
+     * A resolver hook for a single resolve operation.  The hook caches the
+     * Atomos content of each bundle location and the results of checks between
+     * pairs of contents until the resolve operation ends.  The caches are
+     * concurrent maps because a framework may call the hook from more than
+     * one thread during a resolve operation.
+     */
     public class AtomosResolverHook implements ResolverHook
     {
+        private final Map<String, Optional<AtomosContent>> locationToContent = new ConcurrentHashMap<>();
+        private final Map<AtomosContent, Map<AtomosContent, Boolean>> pairResults = new ConcurrentHashMap<>();
+
+        /**
+         * Returns the managed Atomos content connected to the location of the
+         * specified bundle.
+         * @param bundle the bundle
+         * @return the Atomos content or {@code null} if the bundle is not connected
+         *         to Atomos content
+         */
+        public AtomosContent getAtomosContent(Bundle bundle)
+        {
+            return locationToContent.computeIfAbsent(bundle.getLocation(),
+                (l) -> Optional.ofNullable(atomos.getByConnectLocation(l, true))).orElse(
+                    null);
+        }
+
+        /**
+         * Tests a pair of Atomos contents once for the resolve operation.
+         * All calls for a resolve operation must use the same predicate.
+         * @param from the first content
+         * @param to the second content
+         * @param test the test to do if the pair has not been tested yet
+         * @return the result of the test
+         */
+        public boolean test(AtomosContent from, AtomosContent to,
+            BiPredicate<AtomosContent, AtomosContent> test)
+        {
+            return pairResults.computeIfAbsent(from,
+                (f) -> new ConcurrentHashMap<>()).computeIfAbsent(to,
+                    (t) -> test.test(from, t));
+        }
 
         @Override
         public void filterResolvable(Collection<BundleRevision> candidates)
@@ -42,25 +85,25 @@ public class AtomosFrameworkHooks implements ResolverHookFactory, CollisionHook
         public void filterSingletonCollisions(BundleCapability singleton,
             Collection<BundleCapability> collisionCandidates)
         {
-            AtomosContent content = atomos.getByConnectLocation(
-                singleton.getRevision().getBundle().getLocation(), true);
-            atomos.filterNotVisible(content, collisionCandidates);
+            AtomosContent content = getAtomosContent(
+                singleton.getRevision().getBundle());
+            atomos.filterNotVisible(content, collisionCandidates, this);
         }
 
         @Override
         public void filterMatches(BundleRequirement requirement,
             Collection<BundleCapability> candidates)
         {
-            AtomosContent atomosBundle = atomos.getByConnectLocation(
-                requirement.getRevision().getBundle().getLocation(), true);
+            AtomosContent atomosBundle = getAtomosContent(
+                requirement.getRevision().getBundle());
             switch (requirement.getNamespace())
             {
                 case PackageNamespace.PACKAGE_NAMESPACE:
                 case BundleNamespace.BUNDLE_NAMESPACE:
-                    atomos.filterBasedOnReadEdges(atomosBundle, candidates);
+                    atomos.filterBasedOnReadEdges(atomosBundle, candidates, this);
                     return;
                 default:
-                    atomos.filterNotVisible(atomosBundle, candidates);
+                    atomos.filterNotVisible(atomosBundle, candidates, this);
             }
 
         }
@@ -68,7 +111,8 @@ public class AtomosFrameworkHooks implements ResolverHookFactory, CollisionHook
         @Override
         public void end()
         {
-            // do nothing
+            locationToContent.clear();
+            pairResults.clear();
         }
 
     }
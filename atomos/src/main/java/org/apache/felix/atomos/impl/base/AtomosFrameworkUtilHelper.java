@@ -38,9 +38,14 @@ public class AtomosFrameworkUtilHelper implements FrameworkUtilHelper
     @Override
     public Optional<Bundle> getBundle(Class<?> classFromBundle)
     {
-        return helpers.stream().map(h -> h.getBundle(classFromBundle)) //
-            .filter(Optional::isPresent) //
-            .map(Optional::get) //
-            .findFirst();
+        for (FrameworkUtilHelper helper : helpers)
+        {
+            Optional<Bundle> bundle = helper.getBundle(classFromBundle);
+            if (bundle.isPresent())
+            {
+                return bundle;
+            }
+        }
+        return Optional.empty();
     }
 }
@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.base;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.hooks.service.FindHook;
+import org.osgi.framework.hooks.service.ListenerHook;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * Starts installed Atomos bundles on demand.  A bundle is started the first
+ * time a class of the bundle is loaded by Atomos or the bundle of one of its
+ * classes is looked up, or when a service declared by the bundle with an
+ * {@code osgi.service} capability is looked up or listened for.  The bundles
+ * are always started on a separate thread; the class load, bundle lookup or
+ * service lookup that triggered the start does not wait for it, so no class
+ * loading or other lock of the caller is held while a bundle activator runs.
+ * <p>
+ * A bundle that is started or stopped by other means is forgotten and never
+ * started on demand afterwards.
+ * <p>
+ * Extenders, such as the service component runtime, and bundles that export no
+ * packages and declare no services cannot be triggered; they are not added and
+ * must be started eagerly.
+ */
+class AtomosLazyActivator implements FindHook, ListenerHook
+{
+    private static final String SERVICE_NAMESPACE = "osgi.service";
+    private static final String EXTENDER_NAMESPACE = "osgi.extender";
+    private static final Pattern OBJECT_CLASS = Pattern.compile(
+        "\\(\\s*" + Constants.OBJECTCLASS + "\\s*=\\s*([^)\\s*]+)\\s*\\)",
+        Pattern.CASE_INSENSITIVE);
+
+    private final Consumer<Bundle> starter;
+    // the bundles not started yet by connect location
+    private final Map<String, Bundle> pending = new ConcurrentHashMap<>();
+    // the connect locations of the pending bundles by declared service type
+    private final Map<String, Set<String>> providers = new ConcurrentHashMap<>();
+    // the connect locations of the pending bundles with a start task
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    // not a single thread because a starting bundle may wait for another one
+    private final ExecutorService starts = Executors.newCachedThreadPool(
+        r -> {
+            Thread t = new Thread(r, "Atomos lazy start");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /**
+     * Creates an activator.
+     * @param starter starts one bundle and reports its failures
+     */
+    AtomosLazyActivator(Consumer<Bundle> starter)
+    {
+        this.starter = starter;
+    }
+
+    /**
+     * Adds a bundle to start on demand.
+     * @param b the bundle
+     * @return false if the bundle cannot be started on demand and must be
+     *         started now
+     */
+    boolean add(Bundle b)
+    {
+        BundleRevision rev = b.adapt(BundleRevision.class);
+        if (rev == null || (rev.getTypes() & BundleRevision.TYPE_FRAGMENT) != 0)
+        {
+            return false;
+        }
+        List<BundleCapability> services = rev.getDeclaredCapabilities(
+            SERVICE_NAMESPACE);
+        if (!rev.getDeclaredCapabilities(EXTENDER_NAMESPACE).isEmpty()
+            || (services.isEmpty()
+                && rev.getDeclaredCapabilities(PackageNamespace.PACKAGE_NAMESPACE).isEmpty()))
+        {
+            return false;
+        }
+        String location = b.getLocation();
+        pending.put(location, b);
+        services.forEach((c) -> {
+            Object objectClass = c.getAttributes().get(Constants.OBJECTCLASS);
+            if (objectClass instanceof String)
+            {
+                addProvider((String) objectClass, location);
+            }
+            else if (objectClass instanceof List)
+            {
+                for (Object type : (List<?>) objectClass)
+                {
+                    addProvider(String.valueOf(type), location);
+                }
+            }
+        });
+        return true;
+    }
+
+    private void addProvider(String type, String location)
+    {
+        providers.computeIfAbsent(type, (t) -> ConcurrentHashMap.newKeySet()).add(
+            location);
+    }
+
+    /**
+     * Forgets a bundle, for example because it was started, stopped or
+     * uninstalled.
+     * @param location the location of the bundle
+     */
+    void remove(String location)
+    {
+        pending.remove(location);
+    }
+
+    /**
+     * Schedules the start of the bundle at the connect location if it is not
+     * started yet.
+     * @param location the connect location
+     */
+    void activate(String location)
+    {
+        if (location == null || !pending.containsKey(location)
+            || !scheduled.add(location))
+        {
+            return;
+        }
+        try
+        {
+            starts.execute(() -> {
+                scheduled.remove(location);
+                Bundle b = pending.remove(location);
+                if (b != null && b.getState() != Bundle.UNINSTALLED)
+                {
+                    starter.accept(b);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // closed
+            scheduled.remove(location);
+        }
+    }
+
+    private void activateProviders(String type)
+    {
+        Set<String> locations = type == null ? null : providers.get(type);
+        if (locations == null)
+        {
+            return;
+        }
+        for (String location : locations)
+        {
+            activate(location);
+        }
+    }
+
+    private void activateProvidersOf(String filter)
+    {
+        if (filter == null || pending.isEmpty())
+        {
+            return;
+        }
+        Matcher matcher = OBJECT_CLASS.matcher(filter);
+        while (matcher.find())
+        {
+            activateProviders(matcher.group(1));
+        }
+    }
+
+    @Override
+    public void find(BundleContext context, String name, String filter,
+        boolean allServices, Collection<ServiceReference<?>> references)
+    {
+        if (pending.isEmpty())
+        {
+            return;
+        }
+        activateProviders(name);
+        activateProvidersOf(filter);
+    }
+
+    @Override
+    public void added(Collection<ListenerInfo> listeners)
+    {
+        if (pending.isEmpty())
+        {
+            return;
+        }
+        for (ListenerInfo listener : listeners)
+        {
+            activateProvidersOf(listener.getFilter());
+        }
+    }
+
+    @Override
+    public void removed(Collection<ListenerInfo> listeners)
+    {
+        // nothing to do
+    }
+
+    /**
+     * Stops starting bundles on demand.
+     */
+    void close()
+    {
+        starts.shutdownNow();
+        pending.clear();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.base;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.apache.felix.atomos.Atomos;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Assigns the bundles installed by Atomos to start tiers.  The bundles of tier
+ * 0 are started while Atomos starts; the bundles of the later tiers are started
+ * one tier after the other on a background thread once Atomos is registered.
+ * The progress is published with the {@link Atomos#ATOMOS_STARTED_TIER} and
+ * {@link Atomos#ATOMOS_STARTED} properties of the Atomos service.  Tiers are
+ * only used when Atomos starts the bundles eagerly.
+ */
+class AtomosStartTiers
+{
+    private final Map<Pattern, Integer> patterns;
+    private final Consumer<List<Bundle>> starter;
+    private final NavigableMap<Integer, List<Bundle>> deferred = new TreeMap<>();
+    private volatile Thread background;
+    private volatile boolean stopped;
+
+    /**
+     * Creates start tiers.
+     * @param patterns the tiers of the bundle symbolic names matching the
+     * patterns, the first matching pattern is used
+     * @param starter starts the bundles of a tier and reports their failures
+     */
+    AtomosStartTiers(Map<Pattern, Integer> patterns, Consumer<List<Bundle>> starter)
+    {
+        this.patterns = patterns;
+        this.starter = starter;
+    }
+
+    /**
+     * Returns the start tier of a bundle.  A bundle symbolic name pattern of the
+     * configuration takes precedence over the {@link Atomos#ATOMOS_START_TIER_HEADER}
+     * header of the bundle.  Bundles without a tier are in tier 0.
+     * @param b the bundle
+     * @return the start tier
+     */
+    int getTier(Bundle b)
+    {
+        String bsn = b.getSymbolicName();
+        if (bsn != null)
+        {
+            for (Entry<Pattern, Integer> pattern : patterns.entrySet())
+            {
+                if (pattern.getKey().matcher(bsn).matches())
+                {
+                    return pattern.getValue();
+                }
+            }
+        }
+        String tier = b.getHeaders("").get(Atomos.ATOMOS_START_TIER_HEADER);
+        if (tier != null)
+        {
+            try
+            {
+                return Math.max(0, Integer.parseInt(tier.trim()));
+            }
+            catch (NumberFormatException e)
+            {
+                // use the default tier
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Keeps the bundles of the later tiers to start them in the background.
+     * @param bundles the bundles to start
+     * @return the bundles of tier 0 to start now
+     */
+    List<Bundle> defer(List<Bundle> bundles)
+    {
+        List<Bundle> now = new ArrayList<>(bundles.size());
+        for (Bundle b : bundles)
+        {
+            int tier = getTier(b);
+            if (tier == 0)
+            {
+                now.add(b);
+            }
+            else
+            {
+                deferred.computeIfAbsent(tier, (t) -> new ArrayList<>()).add(b);
+            }
+        }
+        return now;
+    }
+
+    /**
+     * Returns the properties of the Atomos service before the later tiers are
+     * started.
+     * @return the service properties
+     */
+    Dictionary<String, Object> getProperties()
+    {
+        return getProperties(0, deferred.isEmpty());
+    }
+
+    private static Dictionary<String, Object> getProperties(int tier, boolean started)
+    {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(Atomos.ATOMOS_STARTED_TIER, tier);
+        properties.put(Atomos.ATOMOS_STARTED, started);
+        return properties;
+    }
+
+    /**
+     * Starts the later tiers on a background thread.  The properties of the
+     * registration are updated after each tier is started.
+     * @param registration the registration of the Atomos service
+     */
+    void startDeferred(ServiceRegistration<?> registration)
+    {
+        if (deferred.isEmpty())
+        {
+            return;
+        }
+        Thread t = new Thread(() -> {
+            try
+            {
+                for (Entry<Integer, List<Bundle>> tier : deferred.entrySet())
+                {
+                    List<Bundle> bundles = new ArrayList<>(tier.getValue());
+                    bundles.removeIf((b) -> b.getState() == Bundle.UNINSTALLED);
+                    if (stopped || Thread.currentThread().isInterrupted())
+                    {
+                        return;
+                    }
+                    starter.accept(bundles);
+                    registration.setProperties(getProperties(tier.getKey(),
+                        tier.getKey().equals(deferred.lastKey())));
+                }
+            }
+            catch (IllegalStateException e)
+            {
+                // the framework is stopping
+            }
+        }, "Atomos tiered start");
+        t.setDaemon(true);
+        background = t;
+        t.start();
+    }
+
+    /**
+     * Stops starting the later tiers.  The background thread is interrupted and
+     * waited for, up to the timeout, to finish the bundle it is starting.  The
+     * starter is expected to skip the remaining bundles of the running tier.
+     * @param timeout the milliseconds to wait for the background thread
+     */
+    void stop(long timeout)
+    {
+        stopped = true;
+        Thread t = background;
+        if (t != null && t != Thread.currentThread())
+        {
+            t.interrupt();
+            try
+            {
+                t.join(timeout);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
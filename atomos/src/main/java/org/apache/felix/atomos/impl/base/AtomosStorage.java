@@ -24,10 +24,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.felix.atomos.AtomosContent;
@@ -39,7 +42,58 @@ import org.osgi.framework.Constants;
 
 public class AtomosStorage
 {
-    private final static int VERSION = 1;
+    /**
+     * The file an Atomos content was discovered from along with the size
+     * and last modified time of the file at the time of discovery.
+     */
+    public static final class ContentSource
+    {
+        final String path;
+        final long length;
+        final long lastModified;
+
+        ContentSource(File file)
+        {
+            this(file.getPath(), file.length(), file.lastModified());
+        }
+
+        ContentSource(String path, long length, long lastModified)
+        {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        boolean isUnchanged(File file)
+        {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * A discovered Atomos content as persisted from a previous run.
+     */
+    static final class ContentSnapshot
+    {
+        final String location;
+        final ContentSource source;
+        final String symbolicName;
+        final String version;
+        final Map<String, String> headers;
+
+        ContentSnapshot(String location, ContentSource source, String symbolicName,
+            String version, Map<String, String> headers)
+        {
+            this.location = location;
+            this.source = source;
+            this.symbolicName = symbolicName;
+            this.version = version;
+            this.headers = headers;
+        }
+    }
+
+    // version 2 adds the discovery snapshot of each content
+    private final static int VERSION = 2;
     private final static String ATOMOS_STORE = "atomosStore.data";
     private final AtomosBase atomos;
 
@@ -72,7 +126,7 @@ public class AtomosStorage
             }
             for (int i = 0; i < numLayers; i++)
             {
-                readLayer(in);
+                readLayer(in, persistentVersion);
             }
             atomos.nextLayerId.set(nextLayerId);
         }
@@ -87,6 +141,71 @@ public class AtomosStorage
         }
     }
 
+    /**
+     * Loads the discovery snapshot of the contents saved by a previous run.
+     * The snapshot is keyed by layer id and then by the path of the file the
+     * content was discovered from.
+     * @param root the storage root
+     * @return the discovery snapshot, empty if none was saved
+     * @throws IOException if an error occurs reading the snapshot
+     */
+    Map<Long, Map<String, ContentSnapshot>> loadSnapshot(File root) throws IOException
+    {
+        Map<Long, Map<String, ContentSnapshot>> result = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(new File(root, ATOMOS_STORE)))))
+        {
+            int persistentVersion = in.readInt();
+            if (persistentVersion < 2 || persistentVersion > VERSION)
+            {
+                return result;
+            }
+            // skip next layer id
+            in.readLong();
+            int numLayers = in.readInt();
+            for (int i = 0; i < numLayers; i++)
+            {
+                // skip name
+                in.readUTF();
+                long id = in.readLong();
+                // skip loader type
+                in.readUTF();
+                int numPaths = in.readInt();
+                for (int j = 0; j < numPaths; j++)
+                {
+                    in.readUTF();
+                }
+                int numParents = in.readInt();
+                for (int j = 0; j < numParents; j++)
+                {
+                    in.readLong();
+                }
+                Map<String, ContentSnapshot> layerSnapshot = new HashMap<>();
+                int numBundles = in.readInt();
+                for (int j = 0; j < numBundles; j++)
+                {
+                    // skip Atomos location and connect location
+                    in.readUTF();
+                    if (in.readBoolean())
+                    {
+                        in.readUTF();
+                    }
+                    ContentSnapshot snapshot = readSnapshot(in);
+                    if (snapshot != null)
+                    {
+                        layerSnapshot.put(snapshot.source.path, snapshot);
+                    }
+                }
+                result.put(id, layerSnapshot);
+            }
+        }
+        catch (FileNotFoundException e)
+        {
+            atomos.debug("No %s found in %s", ATOMOS_STORE, root);
+        }
+        return result;
+    }
+
     void saveLayers(File root) throws IOException
     {
         File atomosStore = new File(root, ATOMOS_STORE);
@@ -136,7 +255,7 @@ public class AtomosStorage
         return result;
     }
 
-    private void readLayer(DataInputStream in) throws IOException
+    private void readLayer(DataInputStream in, int persistentVersion) throws IOException
     {
         String name = in.readUTF();
         long id = in.readLong();
@@ -189,9 +308,14 @@ public class AtomosStorage
         {
             String atomosLocation = in.readUTF();
             atomos.debug("Found Atomos location %s", atomosLocation);
-            if (in.readBoolean())
+            String connectLocation = in.readBoolean() ? in.readUTF() : null;
+            if (persistentVersion >= 2)
+            {
+                // the snapshot is only used for discovery; see loadSnapshot
+                readSnapshot(in);
+            }
+            if (connectLocation != null)
             {
-                String connectLocation = in.readUTF();
                 atomos.debug("Found connected location %s", connectLocation);
                 if (Constants.SYSTEM_BUNDLE_LOCATION.equals(connectLocation))
                 {
@@ -210,8 +334,70 @@ public class AtomosStorage
                         atomosLocation);
                 }
             }
+        }
+    }
 
+    private ContentSnapshot readSnapshot(DataInputStream in) throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return null;
         }
+        String location = in.readUTF();
+        ContentSource source = new ContentSource(in.readUTF(), in.readLong(),
+            in.readLong());
+        String symbolicName = in.readUTF();
+        String version = in.readUTF();
+        int numHeaders = in.readInt();
+        Map<String, String> headers = new HashMap<>(numHeaders * 2);
+        for (int i = 0; i < numHeaders; i++)
+        {
+            headers.put(readString(in), readString(in));
+        }
+        return new ContentSnapshot(location, source, symbolicName, version, headers);
+    }
+
+    private void writeSnapshot(AtomosContentBase content, DataOutputStream out)
+        throws IOException
+    {
+        ContentSource source = content.getContentSource();
+        Map<String, String> headers = source == null ? null
+            : content.getConnectContent().getHeaders().orElse(null);
+        out.writeBoolean(headers != null);
+        if (headers == null)
+        {
+            return;
+        }
+        out.writeUTF(content.getAtomosLocation());
+        out.writeUTF(source.path);
+        out.writeLong(source.length);
+        out.writeLong(source.lastModified);
+        out.writeUTF(content.getSymbolicName());
+        out.writeUTF(content.getVersion().toString());
+        Map<String, String> nonNull = new HashMap<>(headers);
+        nonNull.values().removeIf(v -> v == null);
+        out.writeInt(nonNull.size());
+        for (Map.Entry<String, String> header : nonNull.entrySet())
+        {
+            writeString(header.getKey(), out);
+            writeString(header.getValue(), out);
+        }
+    }
+
+    // header values may be longer than what writeUTF supports
+    private static void writeString(String value, DataOutputStream out)
+        throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     private void writeLayer(AtomosLayerBase layer, DataOutputStream out)
@@ -245,6 +431,7 @@ public class AtomosStorage
             {
                 out.writeUTF(connectLocation);
             }
+            writeSnapshot((AtomosContentBase) content, out);
         }
     }
 
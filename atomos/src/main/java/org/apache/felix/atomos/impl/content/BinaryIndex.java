@@ -0,0 +1,376 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read only view of a binary Atomos bundle index.  The index starts
+ * with a magic number and a format version followed by tagged sections:
+ * <pre>
+ * int magic, int version, int numSections, { int tag, int length, byte[length] }*
+ * </pre>
+ * Sections with an unknown tag are skipped.  The strings section holds the
+ * unique entry paths of all bundles sorted by their UTF-8 bytes as
+ * {@code int count, int[count + 1] offsets, byte[] utf8}.  The bundles section
+ * holds {@code int count} followed by the index, symbolic name and version
+ * strings of each bundle and its entry ids as
+ * {@code int numEntries, int[numEntries] ids, int[numEntries] sortedIds}
+ * where the first array keeps the order of the entries in the original bundle.
+ * The optional entry attributes section holds the size and last modified time
+ * of each entry as {@code long size, long lastModified}, for each bundle in the
+ * order of the bundles section and for each entry in the order of its sorted ids.
+ * The optional packages section holds the packages of each bundle, in the order
+ * of the bundles section, as {@code int numPackages} followed by the package
+ * names.
+ * Strings outside the strings
+ * section are written as {@code int length, byte[length] utf8}.
+ * <p>
+ * The index is mapped into memory when it is a file and is otherwise read
+ * into a single byte array.  Entry paths are only decoded when iterated.
+ */
+public final class BinaryIndex implements PathTable
+{
+    public static final int MAGIC = 0x41544958;
+    public static final int VERSION = 1;
+    public static final int SECTION_STRINGS = 1;
+    public static final int SECTION_BUNDLES = 2;
+    public static final int SECTION_ENTRY_ATTRIBUTES = 3;
+    public static final int SECTION_PACKAGES = 4;
+
+    private final int stringCount;
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer stringData;
+    private final List<IndexedBundle> bundles = new ArrayList<>();
+
+    /**
+     * Opens the binary index at the specified URL.
+     * @param index the index URL
+     * @return the binary index or {@code null} if the URL is not a binary index
+     * @throws IOException if an error occurs reading the index
+     */
+    public static BinaryIndex open(URL index) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(index.openStream()))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                return null;
+            }
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+        return new BinaryIndex(read(index));
+    }
+
+    private static ByteBuffer read(URL index) throws IOException
+    {
+        if ("file".equals(index.getProtocol()))
+        {
+            try (FileChannel channel = FileChannel.open(Paths.get(index.toURI()),
+                StandardOpenOption.READ))
+            {
+                return channel.map(MapMode.READ_ONLY, 0, channel.size());
+            }
+            catch (URISyntaxException | IllegalArgumentException e)
+            {
+                // fall back to reading the stream
+            }
+        }
+        try (InputStream in = index.openStream())
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    private BinaryIndex(ByteBuffer index) throws IOException
+    {
+        if (index.getInt() != MAGIC)
+        {
+            throw new IOException("Not a binary Atomos index.");
+        }
+        int formatVersion = index.getInt();
+        if (formatVersion != VERSION)
+        {
+            throw new IOException(
+                "Unsupported Atomos index version: " + formatVersion);
+        }
+        ByteBuffer strings = null;
+        ByteBuffer bundleSection = null;
+        ByteBuffer attributes = null;
+        ByteBuffer packages = null;
+        int numSections = index.getInt();
+        for (int i = 0; i < numSections; i++)
+        {
+            int tag = index.getInt();
+            int length = index.getInt();
+            ByteBuffer section = slice(index, index.position(), length);
+            skip(index, length);
+            if (tag == SECTION_STRINGS)
+            {
+                strings = section;
+            }
+            else if (tag == SECTION_BUNDLES)
+            {
+                bundleSection = section;
+            }
+            else if (tag == SECTION_ENTRY_ATTRIBUTES)
+            {
+                attributes = section;
+            }
+            else if (tag == SECTION_PACKAGES)
+            {
+                packages = section;
+            }
+        }
+        if (strings == null || bundleSection == null)
+        {
+            throw new IOException("Missing section in binary Atomos index.");
+        }
+
+        stringCount = strings.getInt();
+        stringOffsets = slice(strings, strings.position(),
+            (stringCount + 1) * 4).asIntBuffer();
+        int dataStart = strings.position() + (stringCount + 1) * 4;
+        stringData = slice(strings, dataStart, strings.limit() - dataStart);
+
+        int numBundles = bundleSection.getInt();
+        for (int i = 0; i < numBundles; i++)
+        {
+            String bundleIndex = readString(bundleSection);
+            String symbolicName = readString(bundleSection);
+            String version = readString(bundleSection);
+            int numEntries = bundleSection.getInt();
+            IntBuffer ids = slice(bundleSection, bundleSection.position(),
+                numEntries * 4).asIntBuffer();
+            skip(bundleSection, numEntries * 4);
+            IntBuffer sortedIds = slice(bundleSection, bundleSection.position(),
+                numEntries * 4).asIntBuffer();
+            skip(bundleSection, numEntries * 4);
+            LongBuffer entryAttributes = null;
+            if (attributes != null)
+            {
+                entryAttributes = slice(attributes, attributes.position(),
+                    numEntries * 16).asLongBuffer();
+                skip(attributes, numEntries * 16);
+            }
+            List<String> bundlePackages = null;
+            if (packages != null)
+            {
+                String[] names = new String[packages.getInt()];
+                for (int j = 0; j < names.length; j++)
+                {
+                    names[j] = readString(packages);
+                }
+                bundlePackages = Collections.unmodifiableList(Arrays.asList(names));
+            }
+            bundles.add(new IndexedBundle(bundleIndex, symbolicName, version,
+                IndexedEntrySet.of(this, ids, sortedIds, entryAttributes),
+                bundlePackages));
+        }
+    }
+
+    /**
+     * Returns the bundles of this index in the order they were written.
+     * @return the indexed bundles
+     */
+    public List<IndexedBundle> getBundles()
+    {
+        return bundles;
+    }
+
+    // Buffer methods are used because ByteBuffer overrides them on Java 9 and later
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length)
+    {
+        ByteBuffer result = buffer.duplicate();
+        ((Buffer) result).position(position);
+        ((Buffer) result).limit(position + length);
+        return result.slice();
+    }
+
+    private static void skip(ByteBuffer buffer, int length)
+    {
+        ((Buffer) buffer).position(buffer.position() + length);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getPath(int id)
+    {
+        int start = stringOffsets.get(id);
+        byte[] bytes = new byte[stringOffsets.get(id + 1) - start];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = stringData.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int getId(String path)
+    {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int compare = compareString(mid, key);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int id, byte[] key)
+    {
+        int start = stringOffsets.get(id);
+        int length = stringOffsets.get(id + 1) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++)
+        {
+            int compare = (stringData.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (compare != 0)
+            {
+                return compare;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * A bundle found in the binary index
+     */
+    public static final class IndexedBundle
+    {
+        private final String index;
+        private final String symbolicName;
+        private final String version;
+        private final IndexedEntrySet entries;
+        private final List<String> packages;
+
+        IndexedBundle(String index, String symbolicName, String version,
+            IndexedEntrySet entries, List<String> packages)
+        {
+            this.index = index;
+            this.symbolicName = symbolicName;
+            this.version = version;
+            this.entries = entries;
+            this.packages = packages;
+        }
+
+        public String getIndex()
+        {
+            return index;
+        }
+
+        public String getSymbolicName()
+        {
+            return symbolicName;
+        }
+
+        public String getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Returns an unmodifiable view of the entry paths of this bundle
+         * backed by the index.
+         * @return the entry paths
+         */
+        public Set<String> getEntries()
+        {
+            return entries;
+        }
+
+        /**
+         * Returns the size of an entry of this bundle as recorded in the index.
+         * @param path the entry path
+         * @return the size or -1 if not known
+         */
+        public long getSize(String path)
+        {
+            int entryIndex = entries.indexOf(path);
+            return entryIndex < 0 ? -1 : entries.getSize(entryIndex);
+        }
+
+        /**
+         * Returns the last modified time of an entry of this bundle as recorded
+         * in the index.
+         * @param path the entry path
+         * @return the last modified time or -1 if not known
+         */
+        public long getLastModified(String path)
+        {
+            int entryIndex = entries.indexOf(path);
+            return entryIndex < 0 ? -1 : entries.getLastModified(entryIndex);
+        }
+
+        /**
+         * Returns the private and exported packages of this bundle as computed
+         * when the index was built.
+         * @return the packages or {@code null} if the index has no packages
+         */
+        public List<String> getPackages()
+        {
+            return packages;
+        }
+    }
+}
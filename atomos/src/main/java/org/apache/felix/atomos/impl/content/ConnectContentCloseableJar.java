@@ -16,11 +16,18 @@ package org.apache.felix.atomos.impl.content;
 import static org.apache.felix.atomos.impl.base.AtomosBase.sneakyThrow;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class ConnectContentCloseableJar extends ConnectContentJar
@@ -31,14 +38,24 @@ public class ConnectContentCloseableJar extends ConnectContentJar
     {
         private final Supplier<File> rootSupplier;
         private final String fileName;
+        private final ZipFileCache cache;
+        // the number of current users of the ZIP file or -1 while it is evicted
+        private final AtomicInteger users = new AtomicInteger();
 
         public ZipFileHolder(String fileName, Supplier<File> rootSupplier)
+        {
+            this(fileName, rootSupplier, new ZipFileCache(0));
+        }
+
+        ZipFileHolder(String fileName, Supplier<File> rootSupplier, ZipFileCache cache)
         {
             this.fileName = fileName;
             this.rootSupplier = rootSupplier;
+            this.cache = cache;
         }
 
         private volatile ZipFile zipFile;
+        private volatile long lastAccess;
 
         @Override
         public void accept(Supplier<ZipFile> s)
@@ -47,10 +64,15 @@ public class ConnectContentCloseableJar extends ConnectContentJar
             {
                 return;
             }
-            ZipFile current = zipFile;
-            if (current != null)
+            ZipFile current;
+            synchronized (this)
             {
+                current = zipFile;
                 zipFile = null;
+            }
+            if (current != null)
+            {
+                cache.closed(this);
                 try
                 {
                     current.close();
@@ -65,27 +87,293 @@ public class ConnectContentCloseableJar extends ConnectContentJar
         @Override
         public ZipFile get()
         {
+            lastAccess = System.nanoTime();
             ZipFile current = zipFile;
-            if (current == null)
+            if (current != null)
+            {
+                cache.hit();
+                return current;
+            }
+            boolean opened = false;
+            synchronized (this)
+            {
+                current = zipFile;
+                if (current == null)
+                {
+                    try
+                    {
+                        current = zipFile = new ZipFile(
+                            new File(rootSupplier.get(), fileName));
+                        opened = true;
+                    }
+                    catch (IOException e)
+                    {
+                        sneakyThrow(e);
+                    }
+                }
+            }
+            if (opened)
             {
+                cache.opened(this);
+            }
+            return current;
+        }
+
+        /**
+         * Returns the open ZIP file and prevents it from being evicted until
+         * {@link #unpin()} is called.
+         * @return the open ZIP file
+         */
+        ZipFile pin()
+        {
+            for (;;)
+            {
+                int current = users.get();
+                if (current >= 0 && users.compareAndSet(current, current + 1))
+                {
+                    break;
+                }
+                // being evicted
+                Thread.yield();
+            }
+            try
+            {
+                return get();
+            }
+            catch (RuntimeException | Error e)
+            {
+                unpin();
+                throw e;
+            }
+        }
+
+        void unpin()
+        {
+            users.decrementAndGet();
+        }
+
+        boolean isInUse()
+        {
+            return users.get() != 0;
+        }
+
+        long getLastAccess()
+        {
+            return lastAccess;
+        }
+
+        boolean isOpen()
+        {
+            return zipFile != null;
+        }
+
+        /**
+         * Closes the ZIP file if it is not in use.
+         * @return true if an open ZIP file was closed
+         */
+        boolean evict()
+        {
+            if (!users.compareAndSet(0, -1))
+            {
+                return false;
+            }
+            try
+            {
+                ZipFile current;
+                synchronized (this)
+                {
+                    current = zipFile;
+                    zipFile = null;
+                }
+                if (current == null)
+                {
+                    return false;
+                }
                 try
                 {
-                    current = zipFile = new ZipFile(
-                        new File(rootSupplier.get(), fileName));
+                    current.close();
                 }
                 catch (IOException e)
                 {
-                    sneakyThrow(e);
+                    // ignore; the file is opened again on next use
                 }
+                return true;
+            }
+            finally
+            {
+                users.set(0);
             }
-            return current;
         }
-
     }
 
+    private final String fileName;
+    private final Supplier<File> rootSupplier;
+    private final boolean mapArchive;
+    // mapped on first use; empty if the file cannot be mapped
+    private volatile Optional<MappedArchive> mapped;
+
     public ConnectContentCloseableJar(String fileName, Supplier<File> rootSupplier, Supplier<Optional<Map<String, String>>> headers)
     {
-        super(new ZipFileHolder(fileName, rootSupplier),
+        this(fileName, rootSupplier, new ZipFileCache(0), headers);
+    }
+
+    /**
+     * Creates a content whose ZIP file is closed by the specified cache when too
+     * many files are open and opened again when it is used.
+     */
+    public ConnectContentCloseableJar(String fileName, Supplier<File> rootSupplier,
+        ZipFileCache cache, Supplier<Optional<Map<String, String>>> headers)
+    {
+        this(fileName, rootSupplier, cache, false, headers);
+    }
+
+    /**
+     * Creates a content whose ZIP file is closed by the specified cache when too
+     * many files are open and opened again when it is used.  If mapArchive is true
+     * the bytes of the entries are read from a {@link MappedArchive} when the file
+     * can be mapped.
+     */
+    public ConnectContentCloseableJar(String fileName, Supplier<File> rootSupplier,
+        ZipFileCache cache, boolean mapArchive,
+        Supplier<Optional<Map<String, String>>> headers)
+    {
+        super(new ZipFileHolder(fileName, rootSupplier, cache),
             z -> ((ZipFileHolder) z).accept(z), headers);
+        this.fileName = fileName;
+        this.rootSupplier = rootSupplier;
+        this.mapArchive = mapArchive;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        mapped = null;
+        super.close();
+    }
+
+    private Optional<MappedArchive> mapped()
+    {
+        Optional<MappedArchive> current = mapped;
+        if (current == null)
+        {
+            synchronized (this)
+            {
+                current = mapped;
+                if (current == null)
+                {
+                    try
+                    {
+                        current = Optional.of(MappedArchive.open(
+                            new File(rootSupplier.get(), fileName).toPath()));
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        current = Optional.empty();
+                    }
+                    mapped = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    byte[] getBytes(ZipEntry entry) throws IOException
+    {
+        if (mapArchive)
+        {
+            MappedArchive archive = mapped().orElse(null);
+            ByteBuffer buffer = archive == null ? null : archive.read(entry.getName());
+            if (buffer != null)
+            {
+                if (buffer.hasArray() && buffer.arrayOffset() == 0
+                    && buffer.remaining() == buffer.array().length)
+                {
+                    // an inflated entry
+                    return buffer.array();
+                }
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+        }
+        return super.getBytes(entry);
+    }
+
+    private ZipFileHolder holder()
+    {
+        return (ZipFileHolder) zipSupplier;
+    }
+
+    @Override
+    List<String> readEntryNames()
+    {
+        ZipFile zip = holder().pin();
+        try
+        {
+            return readEntryNames(zip);
+        }
+        finally
+        {
+            holder().unpin();
+        }
+    }
+
+    @Override
+    public Optional<ConnectEntry> getEntry(String name)
+    {
+        ZipEntry entry;
+        ZipFile zip = holder().pin();
+        try
+        {
+            entry = zip.getEntry(name);
+        }
+        finally
+        {
+            holder().unpin();
+        }
+        return entry == null ? Optional.empty() : Optional.of(new JarConnectEntry(entry));
+    }
+
+    @Override
+    InputStream getInputStream(ZipEntry entry) throws IOException
+    {
+        ZipFileHolder holder = holder();
+        ZipFile zip = holder.pin();
+        InputStream in;
+        try
+        {
+            in = zip.getInputStream(entry);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            holder.unpin();
+            throw e;
+        }
+        if (in == null)
+        {
+            holder.unpin();
+            return null;
+        }
+        // the file stays open until the stream is closed
+        AtomicBoolean closed = new AtomicBoolean();
+        return new FilterInputStream(in)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    if (closed.compareAndSet(false, true))
+                    {
+                        holder.unpin();
+                    }
+                }
+            }
+        };
     }
 }
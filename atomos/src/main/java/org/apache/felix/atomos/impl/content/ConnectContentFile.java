@@ -17,12 +17,21 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.osgi.framework.connect.ConnectContent;
 
@@ -34,11 +43,16 @@ public class ConnectContentFile implements ConnectContent
         private final String name;
 
         public FileConnectEntry(File entry, String name)
+        {
+            this(entry, name, entry.isDirectory());
+        }
+
+        FileConnectEntry(File entry, String name, boolean directory)
         {
             this.entry = entry;
             boolean endsInSlash = name.length() > 0
                 && name.charAt(name.length() - 1) == '/';
-            if (entry.isDirectory())
+            if (directory)
             {
                 if (!endsInSlash)
                     name += '/';
@@ -60,6 +74,12 @@ public class ConnectContentFile implements ConnectContent
             return new FileInputStream(entry);
         }
 
+        @Override
+        public byte[] getBytes() throws IOException
+        {
+            return Files.readAllBytes(entry.toPath());
+        }
+
         @Override
         public long getLastModified()
         {
@@ -74,16 +94,121 @@ public class ConnectContentFile implements ConnectContent
 
     }
 
+    /**
+     * The entries of the content read in one walk of the root directory.  Every
+     * directory of the snapshot is watched; the snapshot becomes invalid on the
+     * first entry created or deleted in any of its directories.  A snapshot
+     * walked without a watcher is only used once.  The watcher is notified
+     * asynchronously, so a name missing from the snapshot is still looked up in
+     * the file system; a deleted entry is found until the watcher is notified.
+     */
+    private static final class Snapshot implements Runnable
+    {
+        // entry names in walk order, directories end with a slash
+        final List<String> entries = new ArrayList<>();
+        // entry names without a trailing slash mapped to true for directories
+        final Map<String, Boolean> directories = new HashMap<>();
+        final List<WatchKey> keys = new ArrayList<>();
+        volatile boolean valid = true;
+
+        static Snapshot walk(Path rootPath, DirectoryWatcher watcher) throws IOException
+        {
+            Snapshot snapshot = new Snapshot();
+            try
+            {
+                Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                    Integer.MAX_VALUE, new SimpleFileVisitor<Path>()
+                    {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir,
+                            BasicFileAttributes attrs) throws IOException
+                        {
+                            if (watcher != null)
+                            {
+                                // register before reading the directory so that no change is missed
+                                snapshot.keys.add(watcher.register(dir, snapshot));
+                            }
+                            if (!dir.equals(rootPath))
+                            {
+                                snapshot.add(rootPath.relativize(dir), true);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file,
+                            BasicFileAttributes attrs)
+                        {
+                            snapshot.add(rootPath.relativize(file), attrs.isDirectory());
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc)
+                        {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+            }
+            catch (IOException | RuntimeException e)
+            {
+                if (watcher != null)
+                {
+                    snapshot.cancel(watcher);
+                }
+                throw e;
+            }
+            return snapshot;
+        }
+
+        private void add(Path relative, boolean directory)
+        {
+            String name = relative.toString().replace(File.separatorChar, '/');
+            directories.put(name, directory);
+            entries.add(directory ? name + '/' : name);
+        }
+
+        void cancel(DirectoryWatcher watcher)
+        {
+            valid = false;
+            keys.forEach((k) -> watcher.cancel(k, this));
+        }
+
+        @Override
+        public void run()
+        {
+            valid = false;
+        }
+    }
+
     private static final String POINTER_UPPER_DIRECTORY = "..";
 
     final File root;
 
     final Supplier<Optional<Map<String, String>>> headers;
 
+    private final boolean snapshotEntries;
+
+    private volatile Snapshot snapshot;
+
     public ConnectContentFile(File root, Supplier<Optional<Map<String, String>>> headers)
+    {
+        this(root, headers, false);
+    }
+
+    /**
+     * Creates a content for a directory.
+     * @param root the directory
+     * @param headers the headers of the content
+     * @param snapshotEntries if true the entries are kept in a snapshot that is
+     *        invalidated by watching the directories of the content
+     */
+    public ConnectContentFile(File root, Supplier<Optional<Map<String, String>>> headers,
+        boolean snapshotEntries)
     {
         this.root = root;
         this.headers = headers;
+        this.snapshotEntries = snapshotEntries;
     }
 
     @Override
@@ -95,7 +220,15 @@ public class ConnectContentFile implements ConnectContent
     @Override
     public void close() throws IOException
     {
-        // do nothing
+        synchronized (this)
+        {
+            Snapshot current = snapshot;
+            snapshot = null;
+            if (current != null)
+            {
+                current.cancel(DirectoryWatcher.get());
+            }
+        }
     }
 
     @Override
@@ -107,26 +240,95 @@ public class ConnectContentFile implements ConnectContent
     @Override
     public Iterable<String> getEntries() throws IOException
     {
-        Path rootPath = root.toPath();
-        return Files.find(rootPath, Integer.MAX_VALUE, (p, a) -> true).map((p) -> {
-            Path relative = rootPath.relativize(p);
-            StringBuilder builder = new StringBuilder();
-            for (Path path : relative)
+        Snapshot current = getSnapshot();
+        if (current != null)
+        {
+            return Collections.unmodifiableList(current.entries);
+        }
+        return Snapshot.walk(root.toPath(), null).entries;
+    }
+
+    @Override
+    public Optional<ConnectEntry> getEntry(final String name)
+    {
+        Snapshot current = name.contains(POINTER_UPPER_DIRECTORY) ? null
+            : getSnapshot();
+        String key = current == null ? null : getSnapshotKey(name);
+        if (key != null)
+        {
+            Boolean directory = current.directories.get(key);
+            if (directory != null)
+            {
+                return Optional.of(
+                    new FileConnectEntry(new File(root, key), name, directory));
+            }
+            // the entry may have been created after the snapshot or may differ in case
+        }
+        return getFile(name).map((f) -> new FileConnectEntry(f, name));
+    }
+
+    /**
+     * Returns the snapshot of the entries, walking the root directory if there
+     * is no valid snapshot.
+     * @return the snapshot or {@code null} if snapshots are not enabled or the
+     *         root directory cannot be watched
+     */
+    private Snapshot getSnapshot()
+    {
+        if (!snapshotEntries)
+        {
+            return null;
+        }
+        Snapshot current = snapshot;
+        if (current != null && current.valid)
+        {
+            return current;
+        }
+        DirectoryWatcher watcher = DirectoryWatcher.get();
+        if (watcher == null)
+        {
+            return null;
+        }
+        synchronized (this)
+        {
+            current = snapshot;
+            if (current != null)
             {
-                builder.append(path.getFileName());
-                if (Files.isDirectory(path))
+                if (current.valid)
                 {
-                    builder.append('/');
+                    return current;
                 }
+                current.cancel(watcher);
+            }
+            try
+            {
+                current = Snapshot.walk(root.toPath(), watcher);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                current = null;
             }
-            return builder.toString();
-        }).collect(Collectors.toList());
+            snapshot = current;
+            return current;
+        }
     }
 
-    @Override
-    public Optional<ConnectEntry> getEntry(final String name)
+    /**
+     * Returns the key of an entry name in the snapshot, or {@code null} if the
+     * name is not in the form used by the snapshot and must be looked up in the
+     * file system.
+     */
+    private static String getSnapshotKey(String name)
     {
-        return getFile(name).map((f) -> new FileConnectEntry(f, name));
+        String key = name.endsWith("/") ? name.substring(0, name.length() - 1)
+            : name;
+        if (key.isEmpty() || key.startsWith("/") || key.indexOf('\\') >= 0
+            || key.contains("//") || key.equals(".") || key.startsWith("./")
+            || key.endsWith("/.") || key.contains("/./"))
+        {
+            return null;
+        }
+        return key;
     }
 
     private Optional<File> getFile(String path)
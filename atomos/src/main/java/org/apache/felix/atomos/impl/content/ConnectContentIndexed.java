@@ -16,12 +16,12 @@ package org.apache.felix.atomos.impl.content;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.net.URLConnection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
 
 import org.osgi.framework.connect.ConnectContent;
@@ -32,11 +32,18 @@ public class ConnectContentIndexed implements ConnectContent
     {
         private final String name;
         private final URL resource;
+        private volatile long contentLength;
+        private volatile long lastModified;
+        private volatile boolean attributesKnown;
 
-        URLConnectEntry(String name, URL resource)
+        URLConnectEntry(String name, URL resource, long contentLength,
+            long lastModified)
         {
             this.name = name;
             this.resource = resource;
+            this.contentLength = contentLength;
+            this.lastModified = lastModified;
+            this.attributesKnown = contentLength >= 0 && lastModified >= 0;
         }
 
         @Override
@@ -48,27 +55,38 @@ public class ConnectContentIndexed implements ConnectContent
         @Override
         public long getContentLength()
         {
-            try
-            {
-                return resource.openConnection().getContentLengthLong();
-            }
-            catch (IOException e)
+            if (!attributesKnown)
             {
-                return -1;
+                readAttributes();
             }
+            return contentLength;
         }
 
         @Override
         public long getLastModified()
         {
+            if (!attributesKnown)
+            {
+                readAttributes();
+            }
+            return lastModified;
+        }
+
+        private void readAttributes()
+        {
+            // only done once for entries with no attributes in the index
             try
             {
-                return resource.openConnection().getDate();
+                URLConnection connection = resource.openConnection();
+                lastModified = Math.max(0, connection.getLastModified());
+                contentLength = connection.getContentLengthLong();
             }
             catch (IOException e)
             {
-                return 0;
+                lastModified = 0;
+                contentLength = -1;
             }
+            attributesKnown = true;
         }
 
         @Override
@@ -77,16 +95,38 @@ public class ConnectContentIndexed implements ConnectContent
             return resource.openStream();
         }
 
+        @Override
+        public byte[] getBytes() throws IOException
+        {
+            // only use a length that is already known, finding it may open a connection
+            try (InputStream in = getInputStream())
+            {
+                return EntryBytes.read(in, attributesKnown ? contentLength : -1);
+            }
+        }
+
     }
 
     private final String index;
-    private final Set<String> entries;
+    private final IndexedEntrySet entries;
+    // the resolved entries in the order of the entry indexes, created on first use
+    private volatile AtomicReferenceArray<Optional<ConnectEntry>> resolved;
     final Supplier<Optional<Map<String, String>>> headers;
 
     public ConnectContentIndexed(String index, List<String> entries, Supplier<Optional<Map<String, String>>> headers)
+    {
+        this(index, new FrontCodedPaths(entries).getEntrySet(entries), headers);
+    }
+
+    /**
+     * Creates indexed content using the specified set of entries.
+     * The set must not be modified after it is passed to this constructor.
+     */
+    public ConnectContentIndexed(String index, Set<String> entries, Supplier<Optional<Map<String, String>>> headers)
     {
         this.index = index;
-        this.entries = Collections.unmodifiableSet(new LinkedHashSet<>(entries));
+        this.entries = entries instanceof IndexedEntrySet ? (IndexedEntrySet) entries
+            : new FrontCodedPaths(entries).getEntrySet(entries);
         this.headers = headers;
     }
 
@@ -105,20 +145,47 @@ public class ConnectContentIndexed implements ConnectContent
     @Override
     public Optional<ConnectEntry> getEntry(String name)
     {
-        if (entries.contains(name))
+        int entryIndex = entries.indexOf(name);
+        if (entryIndex < 0)
         {
-            String slashName = '/' + name;
-            URL resource = getClass().getResource(index + slashName);
-            if (resource == null)
-            {
-                resource = getClass().getResource(slashName);
-            }
-            if (resource != null)
+            return Optional.empty();
+        }
+        AtomicReferenceArray<Optional<ConnectEntry>> current = resolved;
+        if (current == null)
+        {
+            synchronized (this)
             {
-                return Optional.of(new URLConnectEntry(name, resource));
+                current = resolved;
+                if (current == null)
+                {
+                    current = new AtomicReferenceArray<>(entries.size());
+                    resolved = current;
+                }
             }
         }
-        return Optional.empty();
+        Optional<ConnectEntry> entry = current.get(entryIndex);
+        if (entry == null)
+        {
+            entry = resolve(name, entryIndex);
+            current.compareAndSet(entryIndex, null, entry);
+        }
+        return entry;
+    }
+
+    private Optional<ConnectEntry> resolve(String name, int entryIndex)
+    {
+        String slashName = '/' + name;
+        URL resource = getClass().getResource(index + slashName);
+        if (resource == null)
+        {
+            resource = getClass().getResource(slashName);
+        }
+        if (resource == null)
+        {
+            return Optional.empty();
+        }
+        return Optional.of(new URLConnectEntry(name, resource,
+            entries.getSize(entryIndex), entries.getLastModified(entryIndex)));
     }
 
     @Override
@@ -15,8 +15,9 @@ package org.apache.felix.atomos.impl.content;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -24,6 +25,7 @@ import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import org.apache.felix.atomos.AtomosContent.DirectoryListing;
 import org.osgi.framework.connect.ConnectContent;
 
 public class ConnectContentJar implements ConnectContent
@@ -31,6 +33,8 @@ public class ConnectContentJar implements ConnectContent
     final Supplier<ZipFile> zipSupplier;
     final Consumer<Supplier<ZipFile>> closer;
     final Supplier<Optional<Map<String, String>>> headers;
+    // built from the entries of the ZIP file on first use
+    private volatile SortedEntryIndex index;
 
     public ConnectContentJar(Supplier<ZipFile> zipSupplier, Consumer<Supplier<ZipFile>> closer, Supplier<Optional<Map<String, String>>> headers)
     {
@@ -48,6 +52,7 @@ public class ConnectContentJar implements ConnectContent
     @Override
     public void close() throws IOException
     {
+        index = null;
         closer.accept(zipSupplier);
     }
 
@@ -60,22 +65,41 @@ public class ConnectContentJar implements ConnectContent
     @Override
     public Iterable<String> getEntries() throws IOException
     {
-        return () -> new Iterator<String>()
+        return getIndex().getEntries();
+    }
+
+    /**
+     * Returns a listing of the entries of this content by directory.
+     * @return the directory listing
+     */
+    public DirectoryListing getDirectoryListing()
+    {
+        return getIndex();
+    }
+
+    private SortedEntryIndex getIndex()
+    {
+        SortedEntryIndex current = index;
+        if (current == null)
         {
-            final Enumeration<? extends ZipEntry> entries = zipSupplier.get().entries();
-
-            @Override
-            public boolean hasNext()
-            {
-                return entries.hasMoreElements();
-            }
-
-            @Override
-            public String next()
-            {
-                return entries.nextElement().getName();
-            }
-        };
+            current = index = new SortedEntryIndex(readEntryNames());
+        }
+        return current;
+    }
+
+    List<String> readEntryNames()
+    {
+        return readEntryNames(zipSupplier.get());
+    }
+
+    static List<String> readEntryNames(ZipFile zip)
+    {
+        List<String> names = new ArrayList<>(zip.size());
+        for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();)
+        {
+            names.add(entries.nextElement().getName());
+        }
+        return names;
     }
 
     @Override
@@ -89,6 +113,20 @@ public class ConnectContentJar implements ConnectContent
         return Optional.empty();
     }
 
+    InputStream getInputStream(ZipEntry entry) throws IOException
+    {
+        return zipSupplier.get().getInputStream(entry);
+    }
+
+    byte[] getBytes(ZipEntry entry) throws IOException
+    {
+        // the size is read from the central directory of the ZIP file
+        try (InputStream in = getInputStream(entry))
+        {
+            return EntryBytes.read(in, entry.getSize());
+        }
+    }
+
     @Override
     public Optional<Map<String, String>> getHeaders()
     {
@@ -113,7 +151,13 @@ public class ConnectContentJar implements ConnectContent
         @Override
         public InputStream getInputStream() throws IOException
         {
-            return zipSupplier.get().getInputStream(entry);
+            return ConnectContentJar.this.getInputStream(entry);
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException
+        {
+            return ConnectContentJar.this.getBytes(entry);
         }
 
         @Override
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches directories for created and deleted entries with one
+ * {@link WatchService} and one daemon thread for all watched directories.
+ * The listeners of a directory are called once, on the watcher thread, for the
+ * first change after the directory is registered.  A directory registered more
+ * than once shares one key; the key is cancelled when its last listener is
+ * removed.
+ */
+final class DirectoryWatcher implements Runnable
+{
+    private static volatile DirectoryWatcher instance;
+    private static volatile boolean unavailable;
+
+    /**
+     * Returns the shared watcher, starting it on first use.
+     * @return the watcher or {@code null} if the default file system cannot be watched
+     */
+    static DirectoryWatcher get()
+    {
+        DirectoryWatcher current = instance;
+        if (current == null && !unavailable)
+        {
+            synchronized (DirectoryWatcher.class)
+            {
+                current = instance;
+                if (current == null && !unavailable)
+                {
+                    try
+                    {
+                        current = instance = new DirectoryWatcher(
+                            FileSystems.getDefault().newWatchService());
+                        Thread thread = new Thread(current, "Atomos directory watcher");
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                    catch (IOException | UnsupportedOperationException e)
+                    {
+                        unavailable = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private final WatchService service;
+    // guarded by this
+    private final Map<WatchKey, List<Runnable>> listeners = new HashMap<>();
+
+    private DirectoryWatcher(WatchService service)
+    {
+        this.service = service;
+    }
+
+    /**
+     * Registers a directory.
+     * @param dir the directory
+     * @param listener called when an entry is created or deleted in the directory
+     * @return the key of the registration which must be cancelled with the
+     *         listener when the directory is no longer watched
+     * @throws IOException if the directory cannot be watched
+     */
+    synchronized WatchKey register(Path dir, Runnable listener) throws IOException
+    {
+        WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_DELETE);
+        listeners.computeIfAbsent(key, (k) -> new ArrayList<>()).add(listener);
+        return key;
+    }
+
+    /**
+     * Removes a listener of a directory.  The directory is no longer watched
+     * when its last listener is removed.
+     * @param key the key returned by {@link #register(Path, Runnable)}
+     * @param listener the listener
+     */
+    synchronized void cancel(WatchKey key, Runnable listener)
+    {
+        List<Runnable> keyListeners = listeners.get(key);
+        if (keyListeners != null && keyListeners.remove(listener)
+            && keyListeners.isEmpty())
+        {
+            listeners.remove(key);
+            key.cancel();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        for (;;)
+        {
+            WatchKey key;
+            try
+            {
+                key = service.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            key.pollEvents();
+            List<Runnable> keyListeners;
+            synchronized (this)
+            {
+                keyListeners = listeners.remove(key);
+                key.cancel();
+            }
+            if (keyListeners != null)
+            {
+                keyListeners.forEach(Runnable::run);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the bytes of connect entries into arrays sized from the known length
+ * of the entry instead of growing a buffer while reading.
+ */
+final class EntryBytes
+{
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int BUFFER_SIZE = 8192;
+
+    private EntryBytes()
+    {
+    }
+
+    /**
+     * Reads all bytes of a stream.
+     * @param in the stream
+     * @param size the expected number of bytes or a negative value if unknown
+     * @return the bytes read
+     * @throws IOException if an error occurs reading the stream
+     */
+    static byte[] read(InputStream in, long size) throws IOException
+    {
+        if (size < 0 || size > MAX_ARRAY_SIZE)
+        {
+            return readUnknown(in, new ByteArrayOutputStream(BUFFER_SIZE));
+        }
+        byte[] bytes = new byte[(int) size];
+        int read = 0;
+        while (read < bytes.length)
+        {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0)
+            {
+                return Arrays.copyOf(bytes, read);
+            }
+            read += n;
+        }
+        int next = in.read();
+        if (next < 0)
+        {
+            return bytes;
+        }
+        // the stream is longer than the expected size
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + BUFFER_SIZE);
+        out.write(bytes);
+        out.write(next);
+        return readUnknown(in, out);
+    }
+
+    private static byte[] readUnknown(InputStream in, ByteArrayOutputStream out)
+        throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+        {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A compact, immutable table of entry paths that can be shared by all indexed
+ * contents of a layer.  The unique paths are sorted by their UTF-8 bytes and
+ * stored front coded in blocks of {@value #BLOCK_SIZE} paths.  The first path
+ * of a block is stored in full, each following path as the length of the
+ * prefix it shares with the previous path and the remaining suffix bytes.
+ * The length of the stored bytes has a flag for the {@code .class} ending,
+ * which is then left out, since most entries of an index are classes.
+ * Lookups binary search the first paths of the blocks and then scan one
+ * block.
+ */
+public final class FrontCodedPaths implements PathTable
+{
+    private static final int BLOCK_SIZE = 16;
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(
+        StandardCharsets.UTF_8);
+
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int size;
+    private final int maxLength;
+
+    /**
+     * Creates a table of the specified paths.
+     * @param paths the paths, may contain duplicates
+     */
+    public FrontCodedPaths(Collection<String> paths)
+    {
+        byte[][] sorted = paths.stream().distinct().map(
+            p -> p.getBytes(StandardCharsets.UTF_8)).sorted(
+                FrontCodedPaths::compare).toArray(byte[][]::new);
+        size = sorted.length;
+        blockOffsets = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int longest = 0;
+        byte[] previous = null;
+        for (int i = 0; i < size; i++)
+        {
+            byte[] current = sorted[i];
+            longest = Math.max(longest, current.length);
+            int end = current.length;
+            int classFlag = 0;
+            if (endsWithClass(current, end))
+            {
+                end -= CLASS_SUFFIX.length;
+                classFlag = 1;
+            }
+            int shared = 0;
+            if (i % BLOCK_SIZE == 0)
+            {
+                blockOffsets[i / BLOCK_SIZE] = out.size();
+            }
+            else
+            {
+                int common = Math.min(previous.length, end);
+                while (shared < common && previous[shared] == current[shared])
+                {
+                    shared++;
+                }
+                writeVarInt(shared, out);
+            }
+            writeVarInt(((end - shared) << 1) | classFlag, out);
+            out.write(current, shared, end - shared);
+            previous = current;
+        }
+        data = out.toByteArray();
+        maxLength = longest;
+    }
+
+    /**
+     * Returns an unmodifiable set of the specified paths backed by this table.
+     * The set keeps the order of the specified paths.
+     * @param paths the paths which must all be contained in this table
+     * @return the set of paths
+     */
+    public Set<String> getEntries(Collection<String> paths)
+    {
+        return getEntrySet(paths);
+    }
+
+    IndexedEntrySet getEntrySet(Collection<String> paths)
+    {
+        int[] ids = paths.stream().mapToInt(this::getId).distinct().toArray();
+        if (Arrays.stream(ids).anyMatch(id -> id < 0))
+        {
+            throw new IllegalArgumentException("Path not found in table.");
+        }
+        return IndexedEntrySet.of(this, ids);
+    }
+
+    /**
+     * Returns the number of unique paths in this table.
+     * @return the number of paths
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public int getId(String path)
+    {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        // find the last block with a first path less than or equal to the key
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+        byte[] current = new byte[maxLength];
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int[] position = { blockOffsets[mid] };
+            int length = readNext(mid * BLOCK_SIZE, position, current, 0);
+            int compare = compare(current, length, key);
+            if (compare < 0)
+            {
+                block = mid;
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid * BLOCK_SIZE;
+            }
+        }
+        if (block < 0)
+        {
+            return -1;
+        }
+        int[] position = { blockOffsets[block] };
+        int length = 0;
+        int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        for (int id = block * BLOCK_SIZE; id < end; id++)
+        {
+            length = readNext(id, position, current, length);
+            int compare = compare(current, length, key);
+            if (compare == 0)
+            {
+                return id;
+            }
+            if (compare > 0)
+            {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getPath(int id)
+    {
+        if (id < 0 || id >= size)
+        {
+            throw new IndexOutOfBoundsException(Integer.toString(id));
+        }
+        byte[] current = new byte[maxLength];
+        int[] position = { blockOffsets[id / BLOCK_SIZE] };
+        int length = 0;
+        for (int i = id - id % BLOCK_SIZE; i <= id; i++)
+        {
+            length = readNext(i, position, current, length);
+        }
+        return new String(current, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readNext(int id, int[] position, byte[] current, int previousLength)
+    {
+        int shared = id % BLOCK_SIZE == 0 ? 0 : readVarInt(data, position);
+        if (shared > previousLength)
+        {
+            throw new IllegalStateException("Corrupt path table.");
+        }
+        int suffixAndFlag = readVarInt(data, position);
+        int suffix = suffixAndFlag >>> 1;
+        System.arraycopy(data, position[0], current, shared, suffix);
+        position[0] += suffix;
+        int length = shared + suffix;
+        if ((suffixAndFlag & 1) != 0)
+        {
+            System.arraycopy(CLASS_SUFFIX, 0, current, length, CLASS_SUFFIX.length);
+            length += CLASS_SUFFIX.length;
+        }
+        return length;
+    }
+
+    private static boolean endsWithClass(byte[] path, int length)
+    {
+        if (length < CLASS_SUFFIX.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < CLASS_SUFFIX.length; i++)
+        {
+            if (path[length - CLASS_SUFFIX.length + i] != CLASS_SUFFIX[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int readVarInt(byte[] data, int[] position)
+    {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = data[position[0]++];
+            result |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static void writeVarInt(int value, ByteArrayOutputStream out)
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int compare(byte[] a, byte[] b)
+    {
+        return compare(a, a.length, b);
+    }
+
+    private static int compare(byte[] a, int aLength, byte[] b)
+    {
+        int common = Math.min(aLength, b.length);
+        for (int i = 0; i < common; i++)
+        {
+            int compare = (a[i] & 0xff) - (b[i] & 0xff);
+            if (compare != 0)
+            {
+                return compare;
+            }
+        }
+        return aLength - b.length;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An unmodifiable set of the entry paths of one indexed content.  The set
+ * only holds the ids of its paths in a {@link PathTable}, once in content
+ * order for iteration and once sorted for lookups.  The position of a path
+ * in the sorted ids is its index, which can be used to keep a table of
+ * additional data for the entries.
+ */
+abstract class IndexedEntrySet extends AbstractSet<String>
+{
+    /**
+     * Creates a set backed by id buffers, for example of a mapped index.
+     * @param table the path table
+     * @param ids the ids in content order
+     * @param sortedIds the same ids sorted
+     * @return the entry set
+     */
+    static IndexedEntrySet of(PathTable table, IntBuffer ids, IntBuffer sortedIds)
+    {
+        return new Buffered(table, ids, sortedIds, null);
+    }
+
+    /**
+     * Creates a set backed by id buffers with known sizes and last modified times.
+     * @param table the path table
+     * @param ids the ids in content order
+     * @param sortedIds the same ids sorted
+     * @param attributes the size and last modified time of each entry in the order
+     *        of the sorted ids
+     * @return the entry set
+     */
+    static IndexedEntrySet of(PathTable table, IntBuffer ids, IntBuffer sortedIds,
+        LongBuffer attributes)
+    {
+        return new Buffered(table, ids, sortedIds, attributes);
+    }
+
+    /**
+     * Creates a set that stores the ids delta encoded on the heap.
+     * @param table the path table
+     * @param ids the unique ids in content order
+     * @return the entry set
+     */
+    static IndexedEntrySet of(PathTable table, int[] ids)
+    {
+        return new Compact(table, ids);
+    }
+
+    private final PathTable table;
+
+    IndexedEntrySet(PathTable table)
+    {
+        this.table = table;
+    }
+
+    abstract PrimitiveIterator.OfInt ids();
+
+    abstract int indexOfId(int id);
+
+    /**
+     * Returns the index of the specified path in this set.
+     * @param path the path
+     * @return the index or -1 if the path is not in this set
+     */
+    int indexOf(String path)
+    {
+        int id = table.getId(path);
+        return id < 0 ? -1 : indexOfId(id);
+    }
+
+    /**
+     * Returns the size of the entry at the specified index if known.
+     * @param index the entry index
+     * @return the size or -1 if not known
+     */
+    long getSize(int index)
+    {
+        return -1;
+    }
+
+    /**
+     * Returns the last modified time of the entry at the specified index if known.
+     * @param index the entry index
+     * @return the last modified time or -1 if not known
+     */
+    long getLastModified(int index)
+    {
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof String && indexOf((String) o) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        PrimitiveIterator.OfInt ids = ids();
+        return new Iterator<String>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return ids.hasNext();
+            }
+
+            @Override
+            public String next()
+            {
+                return table.getPath(ids.nextInt());
+            }
+        };
+    }
+
+    private static final class Buffered extends IndexedEntrySet
+    {
+        private final IntBuffer ids;
+        private final IntBuffer sortedIds;
+        private final LongBuffer attributes;
+
+        Buffered(PathTable table, IntBuffer ids, IntBuffer sortedIds,
+            LongBuffer attributes)
+        {
+            super(table);
+            this.ids = ids;
+            this.sortedIds = sortedIds;
+            this.attributes = attributes;
+        }
+
+        @Override
+        long getSize(int index)
+        {
+            return attributes == null ? -1 : attributes.get(index * 2);
+        }
+
+        @Override
+        long getLastModified(int index)
+        {
+            return attributes == null ? -1 : attributes.get(index * 2 + 1);
+        }
+
+        @Override
+        public int size()
+        {
+            return ids.limit();
+        }
+
+        @Override
+        PrimitiveIterator.OfInt ids()
+        {
+            return new PrimitiveIterator.OfInt()
+            {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < ids.limit();
+                }
+
+                @Override
+                public int nextInt()
+                {
+                    if (!hasNext())
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return ids.get(next++);
+                }
+            };
+        }
+
+        @Override
+        int indexOfId(int id)
+        {
+            int low = 0;
+            int high = sortedIds.limit() - 1;
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                int midId = sortedIds.get(mid);
+                if (midId < id)
+                {
+                    low = mid + 1;
+                }
+                else if (midId > id)
+                {
+                    high = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Stores the ids in content order as zig-zag encoded deltas and the sorted ids
+     * as deltas, both as variable length integers.  Entries of a content are mostly
+     * next to each other in the sorted path table so most deltas fit in one byte.
+     * Every {@value #SKIP} sorted ids the absolute id and its offset are recorded
+     * so that lookups only decode one run of deltas.
+     */
+    private static final class Compact extends IndexedEntrySet
+    {
+        private static final int SKIP = 32;
+
+        private final int size;
+        private final byte[] ids;
+        private final byte[] sortedIds;
+        private final int[] skipIds;
+        private final int[] skipOffsets;
+
+        Compact(PathTable table, int[] contentIds)
+        {
+            super(table);
+            size = contentIds.length;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int previous = 0;
+            for (int id : contentIds)
+            {
+                int delta = id - previous;
+                FrontCodedPaths.writeVarInt((delta << 1) ^ (delta >> 31), out);
+                previous = id;
+            }
+            ids = out.toByteArray();
+
+            int[] sorted = contentIds.clone();
+            Arrays.sort(sorted);
+            out.reset();
+            skipIds = new int[(size + SKIP - 1) / SKIP];
+            skipOffsets = new int[skipIds.length];
+            previous = 0;
+            for (int i = 0; i < size; i++)
+            {
+                if (i % SKIP == 0)
+                {
+                    skipIds[i / SKIP] = sorted[i];
+                    skipOffsets[i / SKIP] = out.size();
+                }
+                else
+                {
+                    FrontCodedPaths.writeVarInt(sorted[i] - previous, out);
+                }
+                previous = sorted[i];
+            }
+            sortedIds = out.toByteArray();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        PrimitiveIterator.OfInt ids()
+        {
+            return new PrimitiveIterator.OfInt()
+            {
+                private final int[] position = { 0 };
+                private int next = 0;
+                private int previous = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size;
+                }
+
+                @Override
+                public int nextInt()
+                {
+                    if (!hasNext())
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    int zigZag = FrontCodedPaths.readVarInt(ids, position);
+                    previous += (zigZag >>> 1) ^ -(zigZag & 1);
+                    next++;
+                    return previous;
+                }
+            };
+        }
+
+        @Override
+        int indexOfId(int id)
+        {
+            // find the last skip entry less than or equal to the id
+            int block = Arrays.binarySearch(skipIds, id);
+            if (block >= 0)
+            {
+                return block * SKIP;
+            }
+            block = -block - 2;
+            if (block < 0)
+            {
+                return -1;
+            }
+            int current = skipIds[block];
+            int index = block * SKIP;
+            int[] position = { skipOffsets[block] };
+            int end = Math.min(size, (block + 1) * SKIP);
+            while (current < id && ++index < end)
+            {
+                current += FrontCodedPaths.readVarInt(sortedIds, position);
+            }
+            return current == id ? index : -1;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A ZIP file mapped into memory once.  The central directory is parsed into a
+ * table of entry offsets when the archive is opened.  Entries that are stored
+ * without compression are returned as read-only slices of the mapping, so
+ * reading them copies no bytes; deflated entries are inflated into a new heap
+ * buffer.  The mapping does not keep the file open.
+ * <p>
+ * ZIP64 archives, archives larger than 2GB, encrypted entries and multi-release
+ * JAR files are not supported; {@link #open(Path)} fails for them and the
+ * caller is expected to read the archive with {@link java.util.zip.ZipFile}.
+ */
+public final class MappedArchive
+{
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int LOCAL_SIZE = 30;
+    private static final int CENTRAL_SIZE = 46;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final ByteBuffer mapped;
+    private final Map<String, Integer> indexes;
+    // local header offset, compressed size, size and method of each entry
+    private final int[] table;
+
+    private MappedArchive(ByteBuffer mapped, Map<String, Integer> indexes, int[] table)
+    {
+        this.mapped = mapped;
+        this.indexes = indexes;
+        this.table = table;
+    }
+
+    /**
+     * Maps an archive.
+     * @param file the archive
+     * @return the mapped archive
+     * @throws IOException if the archive cannot be mapped or is not supported
+     */
+    public static MappedArchive open(Path file) throws IOException
+    {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new ZipException("Archive is too large to map: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(
+                ByteOrder.LITTLE_ENDIAN);
+        }
+        try
+        {
+            return parse(mapped, file);
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            throw new ZipException("Invalid archive: " + file);
+        }
+    }
+
+    private static MappedArchive parse(ByteBuffer mapped, Path file) throws IOException
+    {
+        int end = findEnd(mapped);
+        if (end < 0)
+        {
+            throw new ZipException("No end of central directory: " + file);
+        }
+        int count = Short.toUnsignedInt(mapped.getShort(end + 10));
+        long centralOffset = Integer.toUnsignedLong(mapped.getInt(end + 16));
+        if (count == 0xFFFF || centralOffset == 0xFFFFFFFFL)
+        {
+            throw new ZipException("ZIP64 archives are not supported: " + file);
+        }
+        Map<String, Integer> indexes = new HashMap<>(count * 4 / 3 + 1);
+        int[] table = new int[count * 4];
+        int offset = (int) centralOffset;
+        for (int i = 0; i < count; i++)
+        {
+            if (mapped.getInt(offset) != CENTRAL_HEADER)
+            {
+                throw new ZipException("Invalid central directory: " + file);
+            }
+            int flags = Short.toUnsignedInt(mapped.getShort(offset + 8));
+            int method = Short.toUnsignedInt(mapped.getShort(offset + 10));
+            int compressedSize = mapped.getInt(offset + 20);
+            int size = mapped.getInt(offset + 24);
+            int nameLength = Short.toUnsignedInt(mapped.getShort(offset + 28));
+            int extraLength = Short.toUnsignedInt(mapped.getShort(offset + 30));
+            int commentLength = Short.toUnsignedInt(mapped.getShort(offset + 32));
+            int localOffset = mapped.getInt(offset + 42);
+            if ((flags & 1) != 0 || compressedSize < 0 || size < 0 || localOffset < 0)
+            {
+                throw new ZipException("Unsupported entry in archive: " + file);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer name = mapped.duplicate();
+            ((Buffer) name).position(offset + CENTRAL_SIZE);
+            name.get(nameBytes);
+            String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+            if (entryName.startsWith(VERSIONS))
+            {
+                throw new ZipException("Multi-release archives are not supported: " + file);
+            }
+            indexes.putIfAbsent(entryName, i);
+            table[i * 4] = localOffset;
+            table[i * 4 + 1] = compressedSize;
+            table[i * 4 + 2] = size;
+            table[i * 4 + 3] = method;
+            offset += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new MappedArchive(mapped, indexes, table);
+    }
+
+    private static int findEnd(ByteBuffer mapped)
+    {
+        // the end record is followed by a comment of at most 65535 bytes
+        int last = mapped.limit() - END_SIZE;
+        int first = Math.max(0, last - 0xFFFF);
+        for (int i = last; i >= first; i--)
+        {
+            if (mapped.getInt(i) == END_HEADER)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the archive has an entry with the name.
+     * @param name the entry name
+     * @return true if the entry exists
+     */
+    public boolean contains(String name)
+    {
+        return indexes.containsKey(name);
+    }
+
+    /**
+     * Returns the uncompressed size of an entry.
+     * @param name the entry name
+     * @return the size or -1 if the entry does not exist
+     */
+    public long getSize(String name)
+    {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : Integer.toUnsignedLong(table[index * 4 + 2]);
+    }
+
+    /**
+     * Returns the number of entries of the archive.
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return indexes.size();
+    }
+
+    /**
+     * Reads an entry.  The returned buffer is positioned at the start of the
+     * entry bytes and limited to the end of the entry bytes.
+     * @param name the entry name
+     * @return the bytes of the entry or {@code null} if the entry does not exist
+     * @throws IOException if the entry cannot be read
+     */
+    public ByteBuffer read(String name) throws IOException
+    {
+        Integer index = indexes.get(name);
+        if (index == null)
+        {
+            return null;
+        }
+        int i = index * 4;
+        int local = table[i];
+        int compressedSize = table[i + 1];
+        int size = table[i + 2];
+        int method = table[i + 3];
+        try
+        {
+            if (mapped.getInt(local) != LOCAL_HEADER)
+            {
+                throw new ZipException("Invalid local header: " + name);
+            }
+            int start = local + LOCAL_SIZE
+                + Short.toUnsignedInt(mapped.getShort(local + 26))
+                + Short.toUnsignedInt(mapped.getShort(local + 28));
+            ByteBuffer data = mapped.duplicate();
+            ((Buffer) data).limit(start + compressedSize);
+            ((Buffer) data).position(start);
+            if (method == STORED)
+            {
+                return data.slice().asReadOnlyBuffer();
+            }
+            if (method == DEFLATED)
+            {
+                return ByteBuffer.wrap(inflate(data, compressedSize, size, name));
+            }
+            throw new ZipException("Unsupported compression method " + method + ": " + name);
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            throw new ZipException("Invalid entry: " + name);
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer data, int compressedSize, int size,
+        String name) throws IOException
+    {
+        // one extra zero byte is needed by the inflater for entries without a header
+        byte[] input = new byte[compressedSize + 1];
+        data.get(input, 0, compressedSize);
+        byte[] output = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(input);
+            int read = 0;
+            while (read < size && !inflater.finished())
+            {
+                int n = inflater.inflate(output, read, size - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                read += n;
+            }
+            if (read != size)
+            {
+                throw new ZipException("Invalid entry size: " + name);
+            }
+            return output;
+        }
+        catch (DataFormatException e)
+        {
+            throw new ZipException("Invalid deflated entry: " + name);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+/**
+ * An immutable table of unique entry paths shared by indexed contents.
+ * Each path has an id which is its position in the sorted table.
+ */
+interface PathTable
+{
+    /**
+     * Returns the id of the specified path.
+     * @param path the path
+     * @return the id or -1 if the path is not in the table
+     */
+    int getId(String path);
+
+    /**
+     * Returns the path with the specified id.
+     * @param id the id
+     * @return the path
+     */
+    String getPath(int id);
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.felix.atomos.AtomosContent.DirectoryListing;
+
+/**
+ * An immutable index of the entry paths of a content.  The paths are kept in
+ * content order for {@link #getEntries()} and sorted for listing directories.
+ * The entries of a directory are next to each other in the sorted paths, so a
+ * directory is found with a binary search and its sub-directories are skipped
+ * with another binary search.
+ */
+final class SortedEntryIndex implements DirectoryListing
+{
+    private final List<String> entries;
+    private final String[] sorted;
+
+    SortedEntryIndex(List<String> entries)
+    {
+        this.entries = Collections.unmodifiableList(entries);
+        this.sorted = entries.toArray(new String[0]);
+        Arrays.sort(this.sorted);
+    }
+
+    List<String> getEntries()
+    {
+        return entries;
+    }
+
+    @Override
+    public List<String> listAll(String prefix)
+    {
+        int from = lowerBound(prefix);
+        return Collections.unmodifiableList(
+            Arrays.asList(sorted).subList(from, end(prefix, from)));
+    }
+
+    @Override
+    public List<String> list(String directory)
+    {
+        if (!directory.isEmpty() && !directory.endsWith("/"))
+        {
+            directory = directory + '/';
+        }
+        int i = lowerBound(directory);
+        int end = end(directory, i);
+        List<String> result = new ArrayList<>();
+        while (i < end)
+        {
+            String path = sorted[i];
+            int slash = path.indexOf('/', directory.length());
+            if (slash < 0 || slash == path.length() - 1)
+            {
+                // a file or an explicit sub-directory entry; skip the directory itself
+                if (path.length() > directory.length())
+                {
+                    result.add(path);
+                }
+                i++;
+            }
+            else
+            {
+                // an entry in a sub-directory; add the sub-directory once and skip its entries
+                String subDirectory = path.substring(0, slash + 1);
+                if (result.isEmpty() || !result.get(result.size() - 1).equals(subDirectory))
+                {
+                    result.add(subDirectory);
+                }
+                i = end(subDirectory, i);
+            }
+        }
+        return result;
+    }
+
+    private int lowerBound(String path)
+    {
+        int i = Arrays.binarySearch(sorted, path);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    /**
+     * Returns the index after the last path starting with the prefix, searching
+     * from an index at or before the first path starting with the prefix.
+     */
+    private int end(String prefix, int from)
+    {
+        int low = from;
+        int high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].startsWith(prefix))
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.felix.atomos.impl.content.ConnectContentCloseableJar.ZipFileHolder;
+
+/**
+ * Limits the number of ZIP files opened by {@link ConnectContentCloseableJar}
+ * contents.  When more than the maximum number of files are open the least
+ * recently used files that are not in use are closed.  A closed file is opened
+ * again the next time it is used.
+ */
+public final class ZipFileCache
+{
+    private final int maxOpen;
+    private final Set<ZipFileHolder> open = ConcurrentHashMap.newKeySet();
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Creates a cache.
+     * @param maxOpen the maximum number of open files or 0 for no maximum
+     */
+    public ZipFileCache(int maxOpen)
+    {
+        this.maxOpen = maxOpen;
+    }
+
+    void hit()
+    {
+        hits.increment();
+    }
+
+    void opened(ZipFileHolder holder)
+    {
+        opens.increment();
+        open.add(holder);
+        if (maxOpen > 0 && open.size() > maxOpen)
+        {
+            evict();
+        }
+    }
+
+    void closed(ZipFileHolder holder)
+    {
+        open.remove(holder);
+    }
+
+    private synchronized void evict()
+    {
+        // the files pinned after they were chosen for eviction
+        Set<ZipFileHolder> pinned = new HashSet<>();
+        while (open.size() > maxOpen)
+        {
+            ZipFileHolder oldest = null;
+            for (ZipFileHolder candidate : open)
+            {
+                if (!candidate.isInUse() && !pinned.contains(candidate) && (oldest == null
+                    || candidate.getLastAccess() - oldest.getLastAccess() < 0))
+                {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null)
+            {
+                // all open files are in use
+                return;
+            }
+            // removed first so a concurrent open of the evicted file adds it again
+            open.remove(oldest);
+            if (oldest.evict())
+            {
+                evictions.increment();
+            }
+            else if (oldest.isOpen())
+            {
+                // pinned since it was chosen; keep counting it
+                open.add(oldest);
+                pinned.add(oldest);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of times a file was opened.
+     * @return the number of opens
+     */
+    public long getOpens()
+    {
+        return opens.sum();
+    }
+
+    /**
+     * Returns the number of times a file was closed to stay within the maximum.
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of times a file was used while it was open.
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of open files.
+     * @return the number of open files
+     */
+    public int getOpenCount()
+    {
+        return open.size();
+    }
+}
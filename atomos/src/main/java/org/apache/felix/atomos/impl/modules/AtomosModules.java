@@ -42,7 +42,9 @@ import org.apache.felix.atomos.Atomos;
 import org.apache.felix.atomos.AtomosContent;
 import org.apache.felix.atomos.AtomosLayer;
 import org.apache.felix.atomos.AtomosLayer.LoaderType;
+import org.apache.felix.atomos.AtomosLayer.LookupMissStatistics;
 import org.apache.felix.atomos.impl.base.AtomosBase;
+import org.apache.felix.atomos.impl.base.AtomosFrameworkHooks.AtomosResolverHook;
 import org.apache.felix.atomos.impl.base.JavaServiceNamespace;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -63,14 +65,16 @@ public class AtomosModules extends AtomosBase
     private final Configuration thisConfig = thisModule.getLayer() == null ? null
         : thisModule.getLayer().configuration();
     private final Map<Configuration, AtomosLayerBase> byConfig = new HashMap<>();
-    private final AtomosLayer bootLayer = createBootLayer();
+    // shared by the class loaders and connect contents of all module layers
+    private final ModuleReaderPool readerPool = new ModuleReaderPool(isMapArchives());
 
     public AtomosModules(Map<String, String> config, HeaderProvider headerProvider)
     {
         super(config, headerProvider);
     }
 
-    private AtomosLayer createBootLayer()
+    @Override
+    protected AtomosLayer createBootLayer()
     {
         return createAtomosLayer(thisConfig, "boot", -1, LoaderType.SINGLE);
     }
@@ -96,7 +100,7 @@ public class AtomosModules extends AtomosBase
         {
             throw new IllegalArgumentException("Must specify at least one parent layer.");
         }
-        if (bootLayer.adapt(ModuleLayer.class).isEmpty())
+        if (getBootLayer().adapt(ModuleLayer.class).isEmpty())
         {
             throw new UnsupportedOperationException(
                 "Cannot add module layers when Atomos is not loaded as module.");
@@ -209,10 +213,49 @@ public class AtomosModules extends AtomosBase
         byConfig.remove(
             atomosLayer.adapt(ModuleLayer.class).map(ModuleLayer::configuration).orElse(
                 null));
+        atomosLayer.adapt(LookupMissCache.class).ifPresent(LookupMissCache::invalidate);
+        atomosLayer.adapt(ModuleLayer.class).ifPresent(l -> {
+            // close the readers of the class loaders; the connect contents close their
+            // readers when the framework closes them
+            for (Module m : l.modules())
+            {
+                if (m.getClassLoader() instanceof ModuleConnectLoader)
+                {
+                    ((ModuleConnectLoader) m.getClassLoader()).closeReader();
+                }
+            }
+        });
+    }
+
+    ModuleReaderPool getReaderPool()
+    {
+        return readerPool;
+    }
+
+    private LookupMissCache newMissCache(LoaderType loaderType)
+    {
+        if (loaderType != LoaderType.OSGI)
+        {
+            return null;
+        }
+        String size = config.get(ATOMOS_LOADER_MISS_CACHE_SIZE_PROP);
+        int maxSize = 4096;
+        if (size != null)
+        {
+            try
+            {
+                maxSize = Integer.parseInt(size.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                debug("Invalid loader miss cache size: %s", size);
+            }
+        }
+        return maxSize <= 0 ? null : new LookupMissCache(maxSize);
     }
 
     ModuleLayer findModuleLayer(Configuration config, List<AtomosLayer> parents,
-        LoaderType loaderType)
+        LoaderType loaderType, LookupMissCache missCache)
     {
         if (config == null)
         {
@@ -246,7 +289,7 @@ public class AtomosModules extends AtomosBase
                     return classLoaders.computeIfAbsent(moduleName, (mn) -> {
                         try
                         {
-                            return new ModuleConnectLoader(m, this);
+                            return new ModuleConnectLoader(m, this, missCache);
                         }
                         catch (IOException e)
                         {
@@ -268,12 +311,6 @@ public class AtomosModules extends AtomosBase
         }
     }
 
-    @Override
-    public AtomosLayer getBootLayer()
-    {
-        return bootLayer;
-    }
-
     @Override
     protected Object getAtomosKey(Class<?> classFromBundle)
     {
@@ -287,51 +324,52 @@ public class AtomosModules extends AtomosBase
 
     @Override
     protected void filterBasedOnReadEdges(AtomosContent atomosContent,
-        Collection<BundleCapability> candidates)
+        Collection<BundleCapability> candidates, AtomosResolverHook resolve)
     {
         if (atomosContent == null)
         {
             // only do this for atomos contents
             return;
         }
-        Module m = atomosContent.adapt(Module.class).orElse(null);
-        if (m == null)
+        if (atomosContent.adapt(Module.class).isEmpty())
         {
-            filterNotVisible(atomosContent, candidates);
+            filterNotVisible(atomosContent, candidates, resolve);
         }
         else
         {
             for (Iterator<BundleCapability> iCands = candidates.iterator(); iCands.hasNext();)
             {
                 BundleCapability candidate = iCands.next();
-                AtomosContent candidateAtomos = getByConnectLocation(
-                    candidate.getRevision().getBundle().getLocation(), true);
+                AtomosContent candidateAtomos = resolve.getAtomosContent(
+                    candidate.getRevision().getBundle());
                 if (candidateAtomos == null
-                    || candidateAtomos.adapt(Module.class).isEmpty())
+                    || !resolve.test(atomosContent, candidateAtomos, AtomosModules::canRead))
                 {
                     iCands.remove();
                 }
-                else
-                {
-                    if (!m.canRead(candidateAtomos.adapt(Module.class).get()))
-                    {
-                        iCands.remove();
-                    }
-                }
             }
         }
     }
 
+    private static boolean canRead(AtomosContent from, AtomosContent to)
+    {
+        Optional<Module> toModule = to.adapt(Module.class);
+        return toModule.isPresent()
+            && from.adapt(Module.class).get().canRead(toModule.get());
+    }
+
     public class AtomosLayerModules extends AtomosLayerBase
     {
         private final ModuleLayer moduleLayer;
         private final Set<AtomosContentBase> atomosBundles;
         private final Map<Module, AtomosContentBase> atomosModules;
+        private final LookupMissCache missCache;
 
         AtomosLayerModules(Configuration config, List<AtomosLayer> parents, long id, String name, LoaderType loaderType, Path... paths)
         {
             super(parents, id, name, loaderType, paths);
-            moduleLayer = findModuleLayer(config, parents, loaderType);
+            missCache = newMissCache(loaderType);
+            moduleLayer = findModuleLayer(config, parents, loaderType, missCache);
             atomosBundles = findAtomosLayerContent();
             atomosModules = atomosBundles.stream().filter(
                 a -> a.adapt(Module.class).isPresent()).collect(
@@ -367,6 +405,11 @@ public class AtomosModules extends AtomosBase
             return thisConfig != null;
         }
 
+        ModuleReaderPool getReaderPool()
+        {
+            return readerPool;
+        }
+
         @Override
         public AtomosLayer addModules(String name, Path path)
         {
@@ -413,86 +456,88 @@ public class AtomosModules extends AtomosBase
             Map<ModuleDescriptor, Module> descriptorMap = searchLayer.modules().stream().collect(
                 Collectors.toMap(Module::getDescriptor, m -> (m)));
 
-            for (ResolvedModule resolved : searchLayer.configuration().modules())
-            {
-                // include only if it is not excluded
-                Module m = descriptorMap.get(resolved.reference().descriptor());
-                if (m == null)
-                {
-                    continue;
-                }
+            discoverAtomosContents(new ArrayList<>(searchLayer.configuration().modules()),
+                resolved -> {
+                    // include only if it is not excluded
+                    Module m = descriptorMap.get(resolved.reference().descriptor());
+                    return m == null ? null : findModuleAtomosContent(m, resolved);
+                }, found);
 
-                String location;
-                if (m.getDescriptor().provides().stream().anyMatch(
-                    (p) -> FrameworkFactory.class.getName().equals(p.service())))
-                {
-                    // we assume a module that provides the FrameworkFactory is the system bundle
-                    location = Constants.SYSTEM_BUNDLE_LOCATION;
-                }
-                else
-                {
-                    location = resolved.reference().location().map((u) -> {
-                        StringBuilder sb = new StringBuilder();
-                        if (!getName().isEmpty())
-                        {
-                            sb.append(getName()).append(':');
-                        }
-                        sb.append(u.toString());
-                        return sb.toString();
-                    }).orElse(null);
-                }
-                if (location == null)
-                {
-                    continue;
-                }
+            return Collections.unmodifiableSet(found);
+        }
 
-                ManifestHolder holder = new ManifestHolder();
+        private AtomosContentBase findModuleAtomosContent(Module m,
+            ResolvedModule resolved)
+        {
+            String location;
+            if (m.getDescriptor().provides().stream().anyMatch(
+                (p) -> FrameworkFactory.class.getName().equals(p.service())))
+            {
+                // we assume a module that provides the FrameworkFactory is the system bundle
+                location = Constants.SYSTEM_BUNDLE_LOCATION;
+            }
+            else
+            {
+                location = resolved.reference().location().map((u) -> {
+                    StringBuilder sb = new StringBuilder();
+                    if (!getName().isEmpty())
+                    {
+                        sb.append(getName()).append(':');
+                    }
+                    sb.append(u.toString());
+                    return sb.toString();
+                }).orElse(null);
+            }
+            if (location == null)
+            {
+                return null;
+            }
+
+            ManifestHolder holder = new ManifestHolder();
 
-                ConnectContent content = new ConnectContentModule(m, resolved.reference(), AtomosLayerModules.this, holder::getHeaders);
+            ConnectContent content = new ConnectContentModule(m, resolved.reference(), AtomosLayerModules.this, holder::getHeaders);
 
-                Map<String, String> headers;
+            Map<String, String> headers;
+            try
+            {
+                content.open();
                 try
                 {
-                    content.open();
-                    try
-                    {
-                        headers = getRawHeaders(content);
-                    }
-                    finally
-                    {
-                        content.close();
-                    }
+                    headers = getRawHeaders(content);
                 }
-                catch (IOException e)
+                finally
                 {
-                    throw new UncheckedIOException("Error reading connect manifest.", e);
+                    content.close();
                 }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Error reading connect manifest.", e);
+            }
 
 
 
-                generateHeaders(headers, m);
+            generateHeaders(headers, m);
 
-                headers = applyHeaderProvider(holder, location, headers);
+            headers = applyHeaderProvider(holder, location, headers);
 
-                String symbolicName = headers.get(Constants.BUNDLE_SYMBOLICNAME);
-                if (symbolicName != null)
+            String symbolicName = headers.get(Constants.BUNDLE_SYMBOLICNAME);
+            if (symbolicName != null)
+            {
+                int semiColon = symbolicName.indexOf(';');
+                if (semiColon != -1)
                 {
-                    int semiColon = symbolicName.indexOf(';');
-                    if (semiColon != -1)
-                    {
-                        symbolicName = symbolicName.substring(0, semiColon);
-                    }
-                    symbolicName = symbolicName.trim();
+                    symbolicName = symbolicName.substring(0, semiColon);
+                }
+                symbolicName = symbolicName.trim();
 
-                    Version version = Version.parseVersion(
-                        headers.get(Constants.BUNDLE_VERSION));
+                Version version = Version.parseVersion(
+                    headers.get(Constants.BUNDLE_VERSION));
 
-                    found.add(new AtomosContentModule(m, location,
-                            symbolicName, version, content));
-                }
+                return new AtomosContentModule(m, location,
+                        symbolicName, version, content);
             }
-
-            return Collections.unmodifiableSet(found);
+            return null;
         }
 
         private void generateHeaders(Map<String, String> headers, Module m)
@@ -671,6 +716,11 @@ public class AtomosModules extends AtomosBase
             {
                 return Optional.ofNullable((T) moduleLayer);
             }
+            if (LookupMissStatistics.class.equals(type)
+                || LookupMissCache.class.equals(type))
+            {
+                return Optional.ofNullable((T) missCache);
+            }
             return super.adapt(type);
         }
 
@@ -745,25 +795,29 @@ public class AtomosModules extends AtomosBase
         }
     }
 
+    /**
+     * Schedules the start of the bundle connected with the module if Atomos
+     * contents are started on demand and the bundle has not been started yet.
+     * @param module the module
+     */
+    void activateLazy(Module module)
+    {
+        if (module != null)
+        {
+            activateLazy(atomosKeyToConnectLocation.get(module));
+        }
+    }
+
     public Bundle getBundle(Module module)
     {
         if (module == null)
         {
             return null;
         }
-        String location;
-        lockRead();
-        try
-        {
-            location = atomosKeyToConnectLocation.get(module);
-            if (location == null)
-            {
-                return null;
-            }
-        }
-        finally
+        String location = atomosKeyToConnectLocation.get(module);
+        if (location == null)
         {
-            unlockRead();
+            return null;
         }
         BundleContext bc = getBundleContext();
         if (bc == null)
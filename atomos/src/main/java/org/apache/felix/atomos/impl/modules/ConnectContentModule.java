@@ -19,6 +19,7 @@ import java.io.UncheckedIOException;
 import java.lang.module.ModuleReader;
 import java.lang.module.ModuleReference;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -33,6 +34,7 @@ public class ConnectContentModule implements ConnectContent
     final AtomosLayerModules atomosLayer;
     final Supplier<Optional<Map<String, String>>> headers;
     volatile ModuleReader reader = null;
+    volatile ModuleEntryMetadata metadata = null;
 
     public ConnectContentModule(Module module, ModuleReference reference, AtomosLayerModules atomosLayer, Supplier<Optional<Map<String,String>>> headers)
     {
@@ -43,18 +45,25 @@ public class ConnectContentModule implements ConnectContent
     }
 
     @Override
-    public void open() throws IOException
+    public synchronized void open() throws IOException
     {
-        reader = reference.open();
+        // synchronized so that concurrent opens take only one handle from the pool
+        if (reader == null)
+        {
+            // shares the reader with the class loader of the module if it has one open
+            reader = atomosLayer.getReaderPool().open(reference);
+            metadata = ModuleEntryMetadata.of(reference, reader);
+        }
     }
 
     @Override
-    public void close() throws IOException
+    public synchronized void close() throws IOException
     {
         ModuleReader current = reader;
         if (current != null)
         {
             reader = null;
+            metadata = null;
             current.close();
         }
     }
@@ -115,6 +124,7 @@ public class ConnectContentModule implements ConnectContent
     {
         final String name;
         final URI uri;
+        private volatile long[] sizeAndTime;
 
         public ModuleConnectEntry(String name, URI uri)
         {
@@ -125,14 +135,7 @@ public class ConnectContentModule implements ConnectContent
         @Override
         public long getContentLength()
         {
-            try
-            {
-                return uri.toURL().openConnection().getContentLengthLong();
-            }
-            catch (IOException e)
-            {
-                return 0;
-            }
+            return getSizeAndTime()[0];
         }
 
         @Override
@@ -142,16 +145,43 @@ public class ConnectContentModule implements ConnectContent
         }
 
         @Override
-        public long getLastModified()
+        public byte[] getBytes() throws IOException
         {
+            ModuleReader current = currentReader();
+            ByteBuffer buffer = current.read(name).orElseThrow(
+                () -> new IOException("Entry not found: " + name));
             try
             {
-                return uri.toURL().openConnection().getDate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
             }
-            catch (IOException e)
+            finally
+            {
+                current.release(buffer);
+            }
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return getSizeAndTime()[1];
+        }
+
+        private long[] getSizeAndTime()
+        {
+            long[] current = sizeAndTime;
+            if (current == null)
             {
-                return 0;
+                ModuleReader currentReader = reader;
+                ModuleEntryMetadata currentMetadata = metadata;
+                if (currentReader == null || currentMetadata == null)
+                {
+                    return ModuleEntryMetadata.unknown();
+                }
+                current = sizeAndTime = currentMetadata.get(name, currentReader);
             }
+            return current;
         }
 
         @Override
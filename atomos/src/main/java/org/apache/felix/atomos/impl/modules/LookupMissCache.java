@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.modules;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.felix.atomos.AtomosLayer.LookupMissStatistics;
+
+/**
+ * Remembers the class and resource names that the loaders of one
+ * {@link org.apache.felix.atomos.AtomosLayer.LoaderType#OSGI OSGi} layer failed
+ * to find.  Each loader keeps its own sets of names because a name missing from
+ * one loader may be found by another loader of the same layer.  The total number
+ * of names remembered for the layer is bounded; once the bound is reached new
+ * misses are no longer remembered.  The cache is cleared when the layer is removed.
+ */
+public final class LookupMissCache implements LookupMissStatistics
+{
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+    private final CopyOnWriteArrayList<Set<String>> sets = new CopyOnWriteArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean valid = true;
+
+    LookupMissCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates a new set of names for one loader of the layer.
+     * @return a new set of names
+     */
+    Set<String> newSet()
+    {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        sets.add(set);
+        return set;
+    }
+
+    /**
+     * Returns true if the name is known to be missing from the set.
+     * @param set the set of the loader
+     * @param name the name
+     * @return true if the name is known to be missing
+     */
+    boolean isMissing(Set<String> set, String name)
+    {
+        if (set.contains(name))
+        {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remembers that a name is missing if the cache is not full.
+     * @param set the set of the loader
+     * @param name the name
+     */
+    void addMissing(Set<String> set, String name)
+    {
+        if (valid && size.get() < maxSize && set.add(name))
+        {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * Clears all names and stops remembering new ones.
+     */
+    void invalidate()
+    {
+        valid = false;
+        sets.forEach(Set::clear);
+        sets.clear();
+        size.set(0);
+    }
+
+    @Override
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @Override
+    public int size()
+    {
+        return size.get();
+    }
+}
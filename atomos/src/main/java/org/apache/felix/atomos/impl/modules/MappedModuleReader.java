@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.modules;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleReader;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.felix.atomos.impl.content.MappedArchive;
+
+/**
+ * A reader of a modular JAR that reads and opens entries from a
+ * {@link MappedArchive}.  Stored entries are read without copying their bytes.
+ * Finding and listing entries is done by the reader of the module.
+ */
+final class MappedModuleReader implements ModuleReader
+{
+    private final ModuleReader reader;
+    private final MappedArchive archive;
+
+    MappedModuleReader(ModuleReader reader, MappedArchive archive)
+    {
+        this.reader = reader;
+        this.archive = archive;
+    }
+
+    MappedArchive getArchive()
+    {
+        return archive;
+    }
+
+    @Override
+    public Optional<URI> find(String name) throws IOException
+    {
+        return reader.find(name);
+    }
+
+    @Override
+    public Optional<InputStream> open(String name) throws IOException
+    {
+        ByteBuffer buffer = archive.read(name);
+        if (buffer == null)
+        {
+            return reader.open(name);
+        }
+        if (buffer.hasArray())
+        {
+            return Optional.of(new ByteArrayInputStream(buffer.array(),
+                buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return Optional.of(new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public Optional<ByteBuffer> read(String name) throws IOException
+    {
+        ByteBuffer buffer = archive.read(name);
+        return buffer == null ? reader.read(name) : Optional.of(buffer);
+    }
+
+    @Override
+    public void release(ByteBuffer bb)
+    {
+        // buffers of the archive are not pooled
+        reader.release(bb);
+    }
+
+    @Override
+    public Stream<String> list() throws IOException
+    {
+        return reader.list();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+}
@@ -29,11 +29,18 @@ import java.security.PermissionCollection;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.security.SecureClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleReference;
@@ -51,17 +58,40 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
     private final AtomosModules atomos;
     private final AtomicReference<Module> module = new AtomicReference<>();
 
-    private final HashMap<String, ClassLoader> edges = new HashMap<>();
+    // Immutable map of package name to the loader of the package, including this
+    // loader for the local packages; replaced once in initEdges
+    private volatile Map<String, ClassLoader> packageToLoader = Collections.emptyMap();
+
+    // The names of all resources listed by the reader; built on first use.
+    // Empty if the reader cannot list its resources
+    private volatile Optional<Set<String>> resourceNames;
+    // The URLs of the resources found so far
+    private final Map<String, URL> resourceURLs = new ConcurrentHashMap<>();
+
+    // The cache of misses of the layer; null if misses are not cached
+    private final LookupMissCache missCache;
+    private final Set<String> missingClasses;
+    private final Set<String> missingResources;
 
     public ModuleConnectLoader(ResolvedModule resolvedModule, AtomosModules atomosModules) throws IOException
+    {
+        this(resolvedModule, atomosModules, null);
+    }
+
+    ModuleConnectLoader(ResolvedModule resolvedModule, AtomosModules atomosModules,
+        LookupMissCache missCache) throws IOException
     {
         super("ModuleConnectLoader-" + resolvedModule.name(), null);
 
         this.resolvedModule = resolvedModule;
-        //TODO remove reference and reader? Or Reader needs to be closed?
         ModuleReference reference = resolvedModule.reference();
-        this.reader = reference.open();
+        // the reader is shared with the connect content of the module and is
+        // closed by closeReader when the layer is removed
+        this.reader = atomosModules.getReaderPool().open(reference);
         this.atomos = atomosModules;
+        this.missCache = missCache;
+        this.missingClasses = missCache == null ? null : missCache.newSet();
+        this.missingResources = missCache == null ? null : missCache.newSet();
     }
 
     /** explicit call from AtomosRuntimBundle to allow resources to be freed.
@@ -72,6 +102,22 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
         //TODO 
     }
 
+    /**
+     * Releases the reader of this loader.  Classes and resources can no longer be
+     * found by this loader once the reader is released.
+     */
+    void closeReader()
+    {
+        try
+        {
+            reader.close();
+        }
+        catch (IOException e)
+        {
+            // ignore
+        }
+    }
+
     /** Setup the package -> class loader mapping to other module loaders
      *
      * @param module module associated with this class loader
@@ -82,6 +128,8 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
         Map<String, ? extends ClassLoader> loaders)
     {
         this.module.set(module);
+        Map<String, ClassLoader> edges = new HashMap<>();
+        module.getDescriptor().packages().forEach(p -> edges.put(p, this));
         for (ResolvedModule moduleRead : resolvedModule.reads())
         {
             ClassLoader loaderForModuleRead;
@@ -110,6 +158,12 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
                     .forEach(pn -> edges.putIfAbsent(pn, loaderForModuleRead));
             }
         }
+        packageToLoader = Map.copyOf(edges);
+    }
+
+    private boolean isLocalPackage(String pkg)
+    {
+        return packageToLoader.get(pkg) == this;
     }
 
     private String packageName(String name)
@@ -137,29 +191,75 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
         URL resource = null;
         if (this.resolvedModule.name().equals(moduleName))
         {
-            try
+            resource = resourceURLs.get(name);
+            if (resource == null && mayContain(name)
+                && (missCache == null || !missCache.isMissing(missingResources, name)))
             {
-                resource = AccessController.doPrivileged(
-                    (PrivilegedExceptionAction<URL>) (() -> {
-                        URI rURI = this.reader.find(name).orElse(null);
-                        return rURI == null ? null : rURI.toURL();
-                    }));
-            }
-            catch (PrivilegedActionException e)
-            {
-                if (e.getCause() instanceof IOException)
+                resource = doPrivileged(() -> {
+                    URI rURI = this.reader.find(name).orElse(null);
+                    return rURI == null ? null : rURI.toURL();
+                });
+                if (resource != null)
                 {
-                    throw (IOException) e.getCause();
+                    resourceURLs.putIfAbsent(name, resource);
                 }
-                else
+                else if (missCache != null)
                 {
-                    throw new IOException(e);
+                    missCache.addMissing(missingResources, name);
                 }
             }
         }
         return resource;
     }
 
+    /**
+     * Returns false if the resource is known not to exist without looking it up
+     * in the module.  Directory names are always looked up because readers are not
+     * required to list directories.
+     */
+    private boolean mayContain(String name)
+    {
+        Optional<Set<String>> names = resourceNames;
+        if (names == null)
+        {
+            try
+            {
+                names = Optional.of(doPrivileged(() -> {
+                    try (Stream<String> list = reader.list())
+                    {
+                        return list.collect(Collectors.toUnmodifiableSet());
+                    }
+                }));
+            }
+            catch (IOException e)
+            {
+                names = Optional.empty();
+            }
+            resourceNames = names;
+        }
+        return names.isEmpty() || names.get().contains(name) || name.endsWith("/");
+    }
+
+    private static <T> T doPrivileged(PrivilegedExceptionAction<T> action)
+        throws IOException
+    {
+        try
+        {
+            return AccessController.doPrivileged(action);
+        }
+        catch (PrivilegedActionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            else
+            {
+                throw new IOException(e);
+            }
+        }
+    }
+
     @Override
     public URL findResource(String name)
     {
@@ -173,7 +273,7 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
             //ignore
         }
         String pkg = packageName(name);
-        if (this.module.get().getDescriptor().packages().contains(pkg))
+        if (isLocalPackage(pkg))
         {
             // non-class resources should be returned by this method if the package is open unconditionally
             if (!name.endsWith(".class") && !name.endsWith("/")
@@ -188,8 +288,10 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
     @Override
     public Enumeration<URL> findResources(String name) throws IOException
     {
-        // TODO
-        return null;
+        // a module has at most one resource with a given name
+        URL resource = findResource(name);
+        return resource == null ? Collections.emptyEnumeration()
+            : Collections.enumeration(Collections.singletonList(resource));
     }
 
     @Override
@@ -208,7 +310,14 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
     {
         // first check this class loader resources same as findResources(String name) does
         // then combine the results with ClassLoader.getSystemResources(name);
-        return null;
+        List<URL> result = new ArrayList<>();
+        URL resource = findResource(name);
+        if (resource != null)
+        {
+            result.add(resource);
+        }
+        result.addAll(Collections.list(ClassLoader.getSystemResources(name)));
+        return Collections.enumeration(result);
     }
 
     // -- finding/loading classes
@@ -218,6 +327,16 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
      */
     @Override
     protected Class<?> findClass(String className) throws ClassNotFoundException
+    {
+        Class<?> cls = findLocalClass(className);
+        if (cls == null)
+        {
+            throw new ClassNotFoundException("Could not find class: " + className);
+        }
+        return cls;
+    }
+
+    private Class<?> findLocalClass(String className)
     {
         // map class name to a resource name and use reader to find the bytes
         // use  SecureClassLoader.defineClass(String, ByteBuffer, CodeSource) to define the class
@@ -226,12 +345,21 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
         ByteBuffer clsBytes = null;
         try
         {
+            // the bytes are read without holding the class loading lock;
+            // only the define is done while holding the lock
             Optional<ByteBuffer> optBB = this.reader.read(
                 className.replace('.', '/') + ".class");
             if (optBB.isPresent())
             {
                 clsBytes = optBB.get();
-                cls = defineClass(className, clsBytes, (CodeSource) null);
+                synchronized (getClassLoadingLock(className))
+                {
+                    cls = findLoadedClass(className);
+                    if (cls == null)
+                    {
+                        cls = defineClass(className, clsBytes, (CodeSource) null);
+                    }
+                }
             }
         }
         catch (IOException e)
@@ -243,10 +371,10 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
             if (clsBytes != null)
                 reader.release(clsBytes);
         }
-
-        if (cls == null)
+        if (cls != null)
         {
-            throw new ClassNotFoundException("Could not find class: " + className);
+            // only schedules the start, the bundle is started on another thread
+            atomos.activateLazy(module.get());
         }
         return cls;
     }
@@ -257,14 +385,7 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
         // single-module class loader so ignore passed in module name.
 
         //TODO log a warning or error here if a classname is specified.
-        try
-        {
-            return findClass(className);
-        }
-        catch (ClassNotFoundException e)
-        {
-            return null;
-        }
+        return findLocalClass(className);
     }
 
     /**
@@ -274,42 +395,68 @@ public final class ModuleConnectLoader extends SecureClassLoader implements Bund
     protected Class<?> loadClass(String className, boolean resolve)
         throws ClassNotFoundException
     {
-        Class<?> cls = null;
-        // synchronize on getClassLoadingLock(className)
-        synchronized (getClassLoadingLock(className))
+        Class<?> cls = loadClassOrNull(className);
+        if (cls == null)
         {
-            // find if the class is already loaded and return it if so.
-            cls = findLoadedClass(className);
-            if (cls == null)
-            {
-                // otherwise; check ModuleDescriptor.pacakges to see if it contains the package for the requested class
-                //   if so do the same thing as findClass(String, String)
-                String pkg = className.substring(0, className.lastIndexOf('.'));
-                if (module.get().getDescriptor().packages().contains(pkg))
-                {
-                    cls = findClass(module.get().getName(), className);
-                }
-                else
-                {
-                    // otherwise; check for packages this module can read from and if you have another loader for the package
-                    //   Then call the other loader.loadClass(className)
-                    ClassLoader l = edges.get(pkg);
-                    if (l != null)
-                    {
-                        cls = l.loadClass(className);
-                    }
-                }
-            }
-            if (cls == null)
+            throw new ClassNotFoundException("Could not find class: " + className);
+        }
+        // if any class is found then call resolveClass on it if the resolve param is true
+        else if (resolve)
+        {
+            resolveClass(cls);
+        }
+        return cls;
+    }
+
+    /**
+     * Loads the class with the specified binary name the same way as
+     * {@link #loadClass(String)} but returns {@code null} instead of throwing a
+     * {@code ClassNotFoundException} if the class is not found.
+     * @param className the binary name of the class
+     * @return the class or {@code null} if the class is not found
+     */
+    public Class<?> loadClassOrNull(String className)
+    {
+        // find if the class is already loaded and return it if so; no lock is needed
+        // for this because the class loading lock is only held while defining a class
+        Class<?> cls = findLoadedClass(className);
+        if (cls != null)
+        {
+            return cls;
+        }
+        // otherwise; find the loader for the package of the requested class, which is
+        // this loader for the local packages or another loader for packages this module can read
+        int lastDot = className.lastIndexOf('.');
+        String pkg = lastDot < 0 ? "" : className.substring(0, lastDot);
+        ClassLoader l = packageToLoader.get(pkg);
+        if (l == null
+            || (missCache != null && missCache.isMissing(missingClasses, className)))
+        {
+            return null;
+        }
+        if (l == this)
+        {
+            cls = findLocalClass(className);
+        }
+        else if (l instanceof ModuleConnectLoader)
+        {
+            cls = ((ModuleConnectLoader) l).loadClassOrNull(className);
+        }
+        else
+        {
+            try
             {
-                throw new ClassNotFoundException("Could not find class: " + className);
+                cls = l.loadClass(className);
             }
-            // if any class is found then call resolveClass on it if the resolve param is true
-            else if (resolve)
+            catch (ClassNotFoundException e)
             {
-                resolveClass(cls);
+                // remembered as missing below
             }
         }
+        if (cls == null && missCache != null)
+        {
+            missCache.addMissing(missingClasses, className);
+        }
         return cls;
     }
 
@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.modules;
+
+import java.io.IOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+import org.apache.felix.atomos.impl.content.MappedArchive;
+
+/**
+ * The size and last modified time of the entries of a module, found without
+ * opening URL connections to the module and without reading the entries.
+ * Entries of a modular JAR get their size from the central directory, which is
+ * read once when the content is opened unless the pooled reader already mapped
+ * the archive; their time is the time of the JAR file, which is also the time a
+ * JAR URL connection reports.  Entries of an exploded module and of the
+ * run-time image are read from the file system, other entries have no known
+ * size or time.
+ */
+abstract class ModuleEntryMetadata
+{
+    private static final long[] UNKNOWN = { -1, 0 };
+
+    /**
+     * Returns the size and last modified time of an entry.
+     * @param name the entry name
+     * @param reader the open reader of the module
+     * @return the size or -1 if unknown and the time or 0 if unknown
+     */
+    abstract long[] get(String name, ModuleReader reader);
+
+    static long[] unknown()
+    {
+        return UNKNOWN.clone();
+    }
+
+    /**
+     * Returns the metadata of a module.
+     * @param reference the module reference
+     * @param reader the reader the module was opened with
+     * @return the metadata
+     */
+    static ModuleEntryMetadata of(ModuleReference reference, ModuleReader reader)
+    {
+        URI location = reference.location().orElse(null);
+        if (location != null && "jrt".equals(location.getScheme()))
+        {
+            try
+            {
+                FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+                return new PathMetadata(jrt.getPath("/modules" + location.getPath()));
+            }
+            catch (RuntimeException e)
+            {
+                return new UnknownMetadata();
+            }
+        }
+        if (location != null && "file".equals(location.getScheme()))
+        {
+            Path path = Path.of(location);
+            if (Files.isDirectory(path))
+            {
+                return new PathMetadata(path);
+            }
+            if (Files.isRegularFile(path))
+            {
+                return new ArchiveMetadata(path, ModuleReaderPool.getMappedArchive(reader));
+            }
+        }
+        return new UnknownMetadata();
+    }
+
+    private static final class ArchiveMetadata extends ModuleEntryMetadata
+    {
+        private final Path archive;
+        private final MappedArchive mapped;
+        // the entry sizes from the central directory, null if the archive is mapped
+        private final Map<String, Long> sizes;
+        // -1 until the time of the archive is read
+        private volatile long time = -1;
+
+        ArchiveMetadata(Path archive, MappedArchive mapped)
+        {
+            this.archive = archive;
+            this.mapped = mapped;
+            this.sizes = mapped == null ? readSizes(archive) : null;
+        }
+
+        private static Map<String, Long> readSizes(Path archive)
+        {
+            Map<String, Long> result = new HashMap<>();
+            // the versioned stream gives the sizes of the entries the module reader
+            // uses from a multi-release JAR under their unversioned names
+            try (JarFile jar = new JarFile(archive.toFile(), false, ZipFile.OPEN_READ,
+                Runtime.version()))
+            {
+                jar.versionedStream().forEach(
+                    (e) -> result.put(e.getName(), e.getSize()));
+            }
+            catch (IOException e)
+            {
+                // no sizes for the entries
+            }
+            return result;
+        }
+
+        @Override
+        long[] get(String name, ModuleReader reader)
+        {
+            long size = mapped != null ? mapped.getSize(name)
+                : sizes.getOrDefault(name, -1L);
+            return new long[] { size, size < 0 ? 0 : getTime() };
+        }
+
+        private long getTime()
+        {
+            long current = time;
+            if (current < 0)
+            {
+                try
+                {
+                    current = Files.getLastModifiedTime(archive).toMillis();
+                }
+                catch (IOException e)
+                {
+                    current = 0;
+                }
+                time = current;
+            }
+            return current;
+        }
+    }
+
+    private static final class PathMetadata extends ModuleEntryMetadata
+    {
+        private final Path root;
+
+        PathMetadata(Path root)
+        {
+            this.root = root;
+        }
+
+        @Override
+        long[] get(String name, ModuleReader reader)
+        {
+            try
+            {
+                BasicFileAttributes attributes = Files.readAttributes(
+                    root.resolve(name), BasicFileAttributes.class);
+                return new long[] { attributes.isDirectory() ? 0 : attributes.size(),
+                        attributes.lastModifiedTime().toMillis() };
+            }
+            catch (IOException | RuntimeException e)
+            {
+                return unknown();
+            }
+        }
+    }
+
+    private static final class UnknownMetadata extends ModuleEntryMetadata
+    {
+        @Override
+        long[] get(String name, ModuleReader reader)
+        {
+            return unknown();
+        }
+    }
+}
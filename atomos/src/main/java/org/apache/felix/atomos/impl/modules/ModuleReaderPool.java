@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.modules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.felix.atomos.impl.content.MappedArchive;
+
+/**
+ * A pool of module readers keyed by module location.  The class loader and
+ * the connect content of a module share one reader so that the module is only
+ * opened once.  Each {@link #open(ModuleReference) open} returns a new
+ * handle to the shared reader; the shared reader is closed when the last handle
+ * is closed.
+ */
+final class ModuleReaderPool
+{
+    private final Map<Object, PooledReader> readers = new HashMap<>();
+    private final boolean mapArchives;
+
+    ModuleReaderPool()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a pool.
+     * @param mapArchives if true modular JAR files are read from a {@link MappedArchive}
+     */
+    ModuleReaderPool(boolean mapArchives)
+    {
+        this.mapArchives = mapArchives;
+    }
+
+    /**
+     * Returns a handle to the shared reader of the module, opening the reader
+     * if the module is not open yet.  The handle must be closed when it is no
+     * longer used.
+     * @param reference the module reference
+     * @return a reader handle
+     * @throws IOException if an error occurs opening the module
+     */
+    ModuleReader open(ModuleReference reference) throws IOException
+    {
+        Object key = reference.location().<Object> map(URI::normalize).orElse(
+            reference);
+        synchronized (readers)
+        {
+            PooledReader pooled = readers.get(key);
+            if (pooled == null)
+            {
+                pooled = new PooledReader(key, openReader(reference));
+                readers.put(key, pooled);
+            }
+            pooled.references++;
+            return new ReaderHandle(pooled);
+        }
+    }
+
+    private ModuleReader openReader(ModuleReference reference) throws IOException
+    {
+        ModuleReader reader = reference.open();
+        URI location = reference.location().orElse(null);
+        if (!mapArchives || location == null || !"file".equals(location.getScheme()))
+        {
+            return reader;
+        }
+        Path path = Path.of(location);
+        if (!Files.isRegularFile(path))
+        {
+            return reader;
+        }
+        try
+        {
+            return new MappedModuleReader(reader, MappedArchive.open(path));
+        }
+        catch (IOException e)
+        {
+            // not a supported archive; read it with the reader of the module
+            return reader;
+        }
+    }
+
+    /**
+     * Returns the mapped archive a reader handle of a pool reads from.
+     * @param reader a reader handle
+     * @return the mapped archive or {@code null} if the reader does not read from
+     *         a mapped archive
+     */
+    static MappedArchive getMappedArchive(ModuleReader reader)
+    {
+        if (reader instanceof ReaderHandle
+            && ((ReaderHandle) reader).pooled.reader instanceof MappedModuleReader)
+        {
+            return ((MappedModuleReader) ((ReaderHandle) reader).pooled.reader).getArchive();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of open modules.
+     * @return the number of open modules
+     */
+    int size()
+    {
+        synchronized (readers)
+        {
+            return readers.size();
+        }
+    }
+
+    private void release(PooledReader pooled) throws IOException
+    {
+        synchronized (readers)
+        {
+            if (--pooled.references > 0)
+            {
+                return;
+            }
+            readers.remove(pooled.key);
+        }
+        pooled.reader.close();
+    }
+
+    private static final class PooledReader
+    {
+        final Object key;
+        final ModuleReader reader;
+        // guarded by the readers map
+        int references;
+
+        PooledReader(Object key, ModuleReader reader)
+        {
+            this.key = key;
+            this.reader = reader;
+        }
+    }
+
+    private final class ReaderHandle implements ModuleReader
+    {
+        private final PooledReader pooled;
+        private volatile boolean closed;
+
+        ReaderHandle(PooledReader pooled)
+        {
+            this.pooled = pooled;
+        }
+
+        private ModuleReader reader() throws IOException
+        {
+            if (closed)
+            {
+                throw new IOException("Reader is closed.");
+            }
+            return pooled.reader;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException
+        {
+            return reader().find(name);
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException
+        {
+            return reader().open(name);
+        }
+
+        @Override
+        public Optional<ByteBuffer> read(String name) throws IOException
+        {
+            return reader().read(name);
+        }
+
+        @Override
+        public void release(ByteBuffer bb)
+        {
+            pooled.reader.release(bb);
+        }
+
+        @Override
+        public Stream<String> list() throws IOException
+        {
+            return reader().list();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    return;
+                }
+                closed = true;
+            }
+            ModuleReaderPool.this.release(pooled);
+        }
+    }
+}
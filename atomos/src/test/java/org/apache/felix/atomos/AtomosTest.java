@@ -15,23 +15,35 @@ package org.apache.felix.atomos;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.function.Supplier;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
+import org.apache.felix.atomos.Atomos.HeaderProvider;
+import org.apache.felix.atomos.impl.base.AtomosBase;
 import org.apache.felix.atomos.impl.base.AtomosFrameworkUtilHelper;
 import org.apache.felix.atomos.impl.base.AtomosModuleConnector;
 import org.apache.felix.atomos.impl.base.JavaServiceNamespace;
+import org.apache.felix.atomos.impl.modules.AtomosModules;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -40,9 +52,11 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
 import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.connect.ConnectFrameworkFactory;
 import org.osgi.framework.connect.ModuleConnector;
 import org.osgi.framework.launch.Framework;
+import org.osgi.framework.namespace.PackageNamespace;
 import org.osgi.framework.wiring.BundleRevision;
 import org.osgi.resource.Capability;
 import org.osgi.resource.Namespace;
@@ -185,8 +199,21 @@ public class AtomosTest
         AtomosContent javaXML = runtime.getBootLayer().findAtomosContent(
             "java.xml").get();
 
+        assertNull(FrameworkUtil.getBundle(String.class), "Unexpected bundle.");
         connect(runtime, javaBase, bc);
         connect(runtime, javaXML, bc);
+        Bundle javaBaseBundle = javaBase.getBundle();
+        assertEquals(javaBaseBundle, FrameworkUtil.getBundle(String.class),
+            "Wrong bundle.");
+        assertEquals(javaBaseBundle, FrameworkUtil.getBundle(String.class),
+            "Wrong bundle.");
+
+        javaBase.disconnect();
+        assertNull(FrameworkUtil.getBundle(String.class), "Unexpected bundle.");
+        javaBaseBundle.uninstall();
+        connect(runtime, javaBase, bc);
+        assertEquals(javaBase.getBundle(), FrameworkUtil.getBundle(String.class),
+            "Wrong bundle.");
 
         failConnect(javaBase, javaXML, bc, runtime);
     }
@@ -213,6 +240,286 @@ public class AtomosTest
         	"AtomosContent.getConnectContent did not match ConnectModule.getConnectedContent");
     }
 
+    @Test
+    void testParallelDiscovery()
+    {
+        List<String> sequential = new ArrayList<>();
+        Atomos.newAtomos().getBootLayer().getAtomosContents().forEach(
+            (c) -> sequential.add(c.getAtomosLocation()));
+        List<String> parallel = new ArrayList<>();
+        Atomos.newAtomos(
+            Map.of(AtomosBase.ATOMOS_DISCOVERY_PARALLELISM_PROP, "4")).getBootLayer().getAtomosContents().forEach(
+                (c) -> parallel.add(c.getAtomosLocation()));
+        assertFalse(sequential.isEmpty(), "No contents found.");
+        assertEquals(sequential, parallel, "Wrong order of contents.");
+    }
+
+    @Test
+    void testParallelStart(@TempDir Path storage) throws BundleException, InterruptedException
+    {
+        Map<String, Integer> sequential = startAndGetStates(
+            Map.of(Constants.FRAMEWORK_STORAGE,
+                storage.resolve("sequential").toFile().getAbsolutePath()));
+        Map<String, Integer> parallel = startAndGetStates(
+            Map.of(Constants.FRAMEWORK_STORAGE,
+                storage.resolve("parallel").toFile().getAbsolutePath(),
+                AtomosBase.ATOMOS_START_PARALLELISM_PROP, "4",
+                AtomosBase.ATOMOS_START_THREADS_PROP, "virtual"));
+        assertTrue(sequential.containsValue(Bundle.ACTIVE), "No bundle started.");
+        assertEquals(sequential, parallel, "Wrong bundle states.");
+    }
+
+    @Test
+    void testAsyncDiscovery(@TempDir Path storage) throws BundleException, InterruptedException
+    {
+        Map<String, Integer> sync = startAndGetStates(
+            Map.of(Constants.FRAMEWORK_STORAGE,
+                storage.resolve("sync").toFile().getAbsolutePath(),
+                AtomosBase.ATOMOS_DISCOVERY_ASYNC_PROP, "false"));
+        Map<String, Integer> async = startAndGetStates(
+            Map.of(Constants.FRAMEWORK_STORAGE,
+                storage.resolve("async").toFile().getAbsolutePath(),
+                AtomosBase.ATOMOS_DISCOVERY_ASYNC_PROP, "true"));
+        assertTrue(sync.containsValue(Bundle.ACTIVE), "No bundle started.");
+        assertEquals(sync, async, "Wrong bundle states.");
+    }
+
+    public static class ConstructedAtomos extends AtomosModules
+    {
+        static volatile Boolean constructed;
+        private final Object ready;
+
+        public ConstructedAtomos(Map<String, String> config,
+            HeaderProvider headerProvider)
+        {
+            super(config, headerProvider);
+            ready = new Object();
+        }
+
+        @Override
+        protected AtomosLayer createBootLayer()
+        {
+            constructed = ready != null;
+            return super.createBootLayer();
+        }
+    }
+
+    @Test
+    void testDiscoveryAfterConstruction()
+    {
+        for (String async : List.of("false", "true"))
+        {
+            ConstructedAtomos.constructed = null;
+            Atomos atomos = Atomos.newAtomos(Map.of(AtomosBase.ATOMOS_CLASS_PROP,
+                ConstructedAtomos.class.getName(), AtomosBase.ATOMOS_DISCOVERY_ASYNC_PROP,
+                async));
+            assertNotNull(atomos.getBootLayer(), "No boot layer.");
+            assertEquals(Boolean.TRUE, ConstructedAtomos.constructed,
+                "Discovery started before construction finished, async=" + async);
+        }
+    }
+
+    @Test
+    void testLazyStart(@TempDir Path storage)
+        throws BundleException, ClassNotFoundException, InterruptedException
+    {
+        Map<String, String> config = Map.of(Constants.FRAMEWORK_STORAGE,
+            storage.toFile().getAbsolutePath(), Atomos.ATOMOS_CONTENT_START,
+            Atomos.ATOMOS_CONTENT_START_LAZY);
+        testFramework = Atomos.newAtomos(config).newFramework(config);
+        testFramework.start();
+        BundleContext bc = testFramework.getBundleContext();
+        for (Bundle b : bc.getBundles())
+        {
+            // bundles that export no packages are started eagerly
+            BundleRevision rev = b.adapt(BundleRevision.class);
+            if (b.getBundleId() != 0 && !rev.getDeclaredCapabilities(
+                PackageNamespace.PACKAGE_NAMESPACE).isEmpty())
+            {
+                assertNotEquals(Bundle.ACTIVE, b.getState(),
+                    "Bundle started before use: " + b);
+            }
+        }
+
+        Bundle logging = FrameworkUtil.getBundle(
+            Class.forName("java.util.logging.Logger"));
+        assertNotNull(logging, "No bundle found.");
+        // the bundle is started asynchronously
+        for (int i = 0; i < 100 && logging.getState() != Bundle.ACTIVE; i++)
+        {
+            Thread.sleep(100);
+        }
+        assertEquals(Bundle.ACTIVE, logging.getState(), "Bundle not started on use.");
+
+        // a bundle stopped before use is not started on use
+        Class<?> connectionClass = Class.forName("java.sql.Connection");
+        Bundle sql = Arrays.stream(bc.getBundles()).filter(
+            (b) -> "java.sql".equals(b.getSymbolicName())).findFirst().get();
+        sql.start();
+        sql.stop();
+        assertEquals(sql, FrameworkUtil.getBundle(connectionClass), "Wrong bundle.");
+        Thread.sleep(500);
+        assertEquals(Bundle.RESOLVED, sql.getState(), "Stopped bundle restarted.");
+    }
+
+    @Test
+    void testStartTiers(@TempDir Path storage)
+        throws BundleException, InterruptedException, ClassNotFoundException
+    {
+        Map<String, String> config = Map.of(Constants.FRAMEWORK_STORAGE,
+            storage.toFile().getAbsolutePath(), AtomosBase.ATOMOS_START_TIERS_PROP,
+            "java.log*=2, java.sql=1");
+        testFramework = Atomos.newAtomos(config).newFramework(config);
+        testFramework.start();
+        BundleContext bc = testFramework.getBundleContext();
+        ServiceReference<Atomos> ref = bc.getServiceReference(Atomos.class);
+        assertNotNull(ref, "No Atomos service.");
+        for (int i = 0; i < 100 && !Boolean.TRUE.equals(
+            ref.getProperty(Atomos.ATOMOS_STARTED)); i++)
+        {
+            Thread.sleep(100);
+        }
+        assertEquals(Boolean.TRUE, ref.getProperty(Atomos.ATOMOS_STARTED),
+            "Tiers not started.");
+        assertEquals(2, ref.getProperty(Atomos.ATOMOS_STARTED_TIER), "Wrong tier.");
+        Bundle logging = FrameworkUtil.getBundle(
+            Class.forName("java.util.logging.Logger"));
+        assertEquals(Bundle.ACTIVE, logging.getState(), "Tier bundle not started.");
+    }
+
+    @Test
+    void testStartTiersNotStarted(@TempDir Path storage) throws BundleException
+    {
+        Map<String, String> config = Map.of(Constants.FRAMEWORK_STORAGE,
+            storage.toFile().getAbsolutePath(), AtomosBase.ATOMOS_START_TIERS_PROP,
+            "java.log*=2", Atomos.ATOMOS_CONTENT_START, "false");
+        testFramework = Atomos.newAtomos(config).newFramework(config);
+        testFramework.start();
+        ServiceReference<Atomos> ref = testFramework.getBundleContext().getServiceReference(
+            Atomos.class);
+        assertNotNull(ref, "No Atomos service.");
+        assertNull(ref.getProperty(Atomos.ATOMOS_STARTED), "Tiers reported started.");
+        assertNull(ref.getProperty(Atomos.ATOMOS_STARTED_TIER), "Tier reported started.");
+    }
+
+    @Test
+    void testStopDuringStartTiers(@TempDir Path storage)
+        throws BundleException, InterruptedException
+    {
+        Map<String, String> config = Map.of(Constants.FRAMEWORK_STORAGE,
+            storage.toFile().getAbsolutePath(), AtomosBase.ATOMOS_START_TIERS_PROP,
+            "java.*=1, jdk.*=2");
+        testFramework = Atomos.newAtomos(config).newFramework(config);
+        testFramework.start();
+        testFramework.stop();
+        testFramework.waitForStop(10000);
+        assertFalse(Thread.getAllStackTraces().keySet().stream().anyMatch(
+            (t) -> "Atomos tiered start".equals(t.getName())),
+            "Tiered start still running.");
+    }
+
+    private Map<String, Integer> startAndGetStates(Map<String, String> config)
+        throws BundleException, InterruptedException
+    {
+        testFramework = Atomos.newAtomos(config).newFramework(config);
+        testFramework.start();
+        Map<String, Integer> states = new HashMap<>();
+        for (Bundle b : testFramework.getBundleContext().getBundles())
+        {
+            states.put(b.getLocation(), b.getState());
+        }
+        testFramework.stop();
+        testFramework.waitForStop(10000);
+        return states;
+    }
+
+    @Test
+    void testDiscoverySnapshot(@TempDir Path storage, @TempDir Path lib)
+        throws BundleException, InterruptedException, IOException
+    {
+        File libJar = createLibBundle(
+            lib.resolve(AtomosBase.ATOMOS_LIB_DIR).resolve("snapshot.lib.jar"));
+        String location = "boot:" + libJar.getName();
+        Map<String, String> config = Map.of(Constants.FRAMEWORK_STORAGE,
+            storage.toFile().getAbsolutePath(),
+            AtomosBase.ATOMOS_DISCOVERY_SNAPSHOT_PROP, "true",
+            AtomosBase.ATOMOS_LIB_DIR_PROP, lib.toFile().getAbsolutePath());
+        // the header provider is only called for contents discovered from the JAR
+        List<String> discovered = new ArrayList<>();
+        HeaderProvider recorder = (l, headers) -> {
+            discovered.add(l);
+            return Optional.empty();
+        };
+
+        startStopSnapshot(config, recorder, location);
+        assertTrue(discovered.contains(location), "Lib content not discovered.");
+
+        // restart with the saved snapshot
+        discovered.clear();
+        startStopSnapshot(config, recorder, location);
+        assertFalse(discovered.contains(location),
+            "Lib content not created from the snapshot.");
+
+        // a changed JAR is discovered again
+        discovered.clear();
+        assertTrue(libJar.setLastModified(libJar.lastModified() - 10000),
+            "Unable to change the time.");
+        startStopSnapshot(config, recorder, location);
+        assertTrue(discovered.contains(location), "Changed time not discovered.");
+
+        discovered.clear();
+        startStopSnapshot(config, recorder, location);
+        assertFalse(discovered.contains(location),
+            "Lib content not created from the new snapshot.");
+
+        // a JAR with a changed size but the same time is discovered again
+        discovered.clear();
+        long time = libJar.lastModified();
+        createLibBundle(libJar.toPath(), "Bundle-Description", "changed size");
+        assertTrue(libJar.setLastModified(time), "Unable to change the time.");
+        startStopSnapshot(config, recorder, location);
+        assertTrue(discovered.contains(location), "Changed size not discovered.");
+    }
+
+    private void startStopSnapshot(Map<String, String> config,
+        HeaderProvider headerProvider, String location)
+        throws BundleException, InterruptedException
+    {
+        Atomos atomos = Atomos.newAtomos(config, headerProvider);
+        AtomosContent content = atomos.getBootLayer().getAtomosContents().stream().filter(
+            (c) -> location.equals(c.getAtomosLocation())).findFirst().orElse(null);
+        assertNotNull(content, "No lib content found.");
+        assertEquals("snapshot.lib", content.getSymbolicName(), "Wrong symbolic name.");
+        testFramework = atomos.newFramework(config);
+        testFramework.start();
+        Bundle b = content.getBundle();
+        assertNotNull(b, "Lib bundle not installed.");
+        assertEquals("snapshot.lib", b.getSymbolicName(), "Wrong symbolic name.");
+        testFramework.stop();
+        testFramework.waitForStop(10000);
+    }
+
+    private static File createLibBundle(Path file, String... headers)
+        throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, "snapshot.lib");
+        for (int i = 0; i < headers.length; i += 2)
+        {
+            attributes.putValue(headers[i], headers[i + 1]);
+        }
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(file),
+            manifest))
+        {
+            // only the manifest
+        }
+        return file.toFile();
+    }
+
     private void failConnect(AtomosContent c1, AtomosContent c2, BundleContext bc,
         Atomos runtime) throws BundleException
     {
@@ -13,11 +13,14 @@
  */
 package org.apache.felix.atomos.impl.content;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -43,4 +46,64 @@ public class ConnectContentFileTest
             "../testcontentbreakout/file");
         assertTrue(entry.isEmpty(), "Found unexpected entry.");
     }
+
+    @Test
+    void testSnapshot(@TempDir Path tmpDir) throws IOException
+    {
+        Path content = tmpDir.resolve("testcontent");
+        Files.createDirectories(content.resolve("a/b"));
+        Files.write(content.resolve("a/b/file.txt"), new byte[] { 1, 2, 3 });
+        ConnectContent connectContent = new ConnectContentFile(content.toFile(),
+            Optional::empty, true);
+
+        List<String> entries = new ArrayList<>();
+        connectContent.getEntries().forEach(entries::add);
+        entries.sort(null);
+        assertEquals(List.of("a/", "a/b/", "a/b/file.txt"), entries);
+
+        assertEquals("a/b/", connectContent.getEntry("a/b").get().getName());
+        assertEquals("a/b/file.txt",
+            connectContent.getEntry("a/b/file.txt/").get().getName());
+        assertEquals(3, connectContent.getEntry("a/b/file.txt").get().getContentLength());
+        assertTrue(connectContent.getEntry("a/missing.txt").isEmpty(),
+            "Found unexpected entry.");
+
+        // a created file is found before the watcher invalidates the snapshot
+        Files.createFile(content.resolve("a/missing.txt"));
+        assertTrue(connectContent.getEntry("a/missing.txt").isPresent(),
+            "Missing created entry.");
+
+        // a closed content walks the directory again
+        Files.delete(content.resolve("a/missing.txt"));
+        connectContent.close();
+        assertTrue(connectContent.getEntry("a/missing.txt").isEmpty(),
+            "Found deleted entry.");
+    }
+
+    @Test
+    void testSharedDirectory(@TempDir Path tmpDir) throws IOException, InterruptedException
+    {
+        Path content = tmpDir.resolve("testcontent");
+        Files.createDirectories(content.resolve("a"));
+        Files.write(content.resolve("a/file.txt"), new byte[] { 1 });
+        ConnectContent connectContent1 = new ConnectContentFile(content.toFile(),
+            Optional::empty, true);
+        ConnectContent connectContent2 = new ConnectContentFile(content.toFile(),
+            Optional::empty, true);
+        assertTrue(connectContent1.getEntry("a/file.txt").isPresent(), "Missing entry.");
+        assertTrue(connectContent2.getEntry("a/file.txt").isPresent(), "Missing entry.");
+
+        // closing one content must keep watching the directories for the other
+        connectContent1.close();
+        Files.delete(content.resolve("a/file.txt"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (connectContent2.getEntry("a/file.txt").isPresent()
+            && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(connectContent2.getEntry("a/file.txt").isEmpty(),
+            "Found deleted entry.");
+        connectContent2.close();
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class EntryBytesTest
+{
+    private final byte[] data = new byte[20000];
+    {
+        new Random(42).nextBytes(data);
+    }
+
+    @Test
+    void testKnownSize() throws IOException
+    {
+        assertArrayEquals(data,
+            EntryBytes.read(new ByteArrayInputStream(data), data.length));
+        assertArrayEquals(new byte[0],
+            EntryBytes.read(new ByteArrayInputStream(new byte[0]), 0));
+    }
+
+    @Test
+    void testUnknownSize() throws IOException
+    {
+        assertArrayEquals(data, EntryBytes.read(new ByteArrayInputStream(data), -1));
+    }
+
+    @Test
+    void testWrongSize() throws IOException
+    {
+        assertArrayEquals(data,
+            EntryBytes.read(new ByteArrayInputStream(data), data.length + 100));
+        assertArrayEquals(data,
+            EntryBytes.read(new ByteArrayInputStream(data), data.length - 100));
+        assertArrayEquals(Arrays.copyOf(data, 10),
+            EntryBytes.read(new ByteArrayInputStream(data, 0, 10), 1));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class FrontCodedPathsTest
+{
+    @Test
+    void testLookup()
+    {
+        List<String> bundle1 = new ArrayList<>();
+        List<String> bundle2 = new ArrayList<>();
+        bundle1.add("META-INF/");
+        bundle1.add("META-INF/MANIFEST.MF");
+        bundle2.add("META-INF/MANIFEST.MF");
+        bundle2.add(".class");
+        bundle2.add("a.clas");
+        bundle2.add("a.class");
+        bundle2.add("a.classes");
+        bundle2.add("a.class/b.class");
+        for (int i = 0; i < 100; i++)
+        {
+            bundle1.add("org/example/a/p" + i + "/");
+            bundle1.add("org/example/a/p" + i + "/Class" + i + ".class");
+            bundle2.add("org/example/b/p" + i + "/Cläss" + i + ".class");
+        }
+        List<String> all = new ArrayList<>(bundle1);
+        all.addAll(bundle2);
+        FrontCodedPaths paths = new FrontCodedPaths(all);
+        assertEquals(new HashSet<>(all).size(), paths.size(), "Wrong size.");
+
+        for (String path : all)
+        {
+            assertEquals(path, paths.getPath(paths.getId(path)), "Wrong path.");
+        }
+        assertEquals(-1, paths.getId(""), "Unexpected id.");
+        assertEquals(-1, paths.getId("META-INF"), "Unexpected id.");
+        assertEquals(-1, paths.getId("org/example/a/p1"), "Unexpected id.");
+        assertEquals(-1, paths.getId("zzz"), "Unexpected id.");
+
+        Set<String> entries1 = paths.getEntries(bundle1);
+        assertEquals(bundle1, new ArrayList<>(entries1), "Wrong entries.");
+        assertTrue(entries1.contains("META-INF/"), "Missing entry.");
+        assertTrue(entries1.contains("org/example/a/p7/Class7.class"), "Missing entry.");
+        assertFalse(entries1.contains("org/example/b/p7/Cläss7.class"),
+            "Unexpected entry.");
+        Set<String> entries2 = paths.getEntries(bundle2);
+        assertEquals(bundle2, new ArrayList<>(entries2), "Wrong entries.");
+        assertTrue(entries2.contains("org/example/b/p7/Cläss7.class"),
+            "Missing entry.");
+        assertFalse(entries2.contains("META-INF/"), "Unexpected entry.");
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedArchiveTest
+{
+    static void writeArchive(Path archive, String storedName, String deflatedName,
+        byte[] data) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(archive);
+            ZipOutputStream zip = new ZipOutputStream(out))
+        {
+            zip.setComment("a comment");
+            ZipEntry stored = new ZipEntry(storedName);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(data);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry(deflatedName));
+            zip.write(data);
+            zip.closeEntry();
+        }
+    }
+
+    @Test
+    void testRead(@TempDir Path tmpDir) throws IOException
+    {
+        byte[] data = new byte[10000];
+        new Random(42).nextBytes(data);
+        // compressible half
+        for (int i = 0; i < 5000; i++)
+        {
+            data[i] = (byte) (i % 7);
+        }
+        Path archive = tmpDir.resolve("test.jar");
+        writeArchive(archive, "a/stored.bin", "b/deflated.bin", data);
+
+        MappedArchive mapped = MappedArchive.open(archive);
+        assertEquals(2, mapped.size(), "Wrong number of entries.");
+        assertTrue(mapped.contains("a/stored.bin"), "Missing entry.");
+        assertFalse(mapped.contains("a/missing.bin"), "Unexpected entry.");
+        assertNull(mapped.read("a/missing.bin"), "Unexpected entry.");
+
+        ByteBuffer stored = mapped.read("a/stored.bin");
+        assertTrue(stored.isDirect(), "Stored entry is not read from the mapping.");
+        assertTrue(stored.isReadOnly(), "Stored entry is writable.");
+        assertArrayEquals(data, toArray(stored));
+
+        assertArrayEquals(data, toArray(mapped.read("b/deflated.bin")));
+    }
+
+    @Test
+    void testMultiRelease(@TempDir Path tmpDir) throws IOException
+    {
+        Path archive = tmpDir.resolve("test.jar");
+        writeArchive(archive, "a/stored.bin", "META-INF/versions/11/a/stored.bin",
+            new byte[] { 1 });
+        assertThrows(ZipException.class, () -> MappedArchive.open(archive));
+    }
+
+    @Test
+    void testNotArchive(@TempDir Path tmpDir) throws IOException
+    {
+        Path file = tmpDir.resolve("test.jar");
+        Files.write(file, new byte[100]);
+        assertThrows(ZipException.class, () -> MappedArchive.open(file));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
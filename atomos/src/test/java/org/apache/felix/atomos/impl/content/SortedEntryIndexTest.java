@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SortedEntryIndexTest
+{
+    @Test
+    void testList()
+    {
+        List<String> entries = Arrays.asList("META-INF/MANIFEST.MF", "a/", "a/b/c.class",
+            "a/b/d.class", "a/b-x.txt", "a/e.txt", "a/f/", "root.txt", "z/y/x/w.txt");
+        SortedEntryIndex index = new SortedEntryIndex(entries);
+        assertEquals(entries, index.getEntries(), "Wrong entries.");
+
+        assertEquals(Arrays.asList("META-INF/", "a/", "root.txt", "z/"), index.list(""),
+            "Wrong root listing.");
+        assertEquals(Arrays.asList("a/b-x.txt", "a/b/", "a/e.txt", "a/f/"),
+            index.list("a/"), "Wrong directory listing.");
+        assertEquals(index.list("a/"), index.list("a"), "Wrong directory listing.");
+        assertEquals(Arrays.asList("a/b/c.class", "a/b/d.class"), index.list("a/b/"),
+            "Wrong directory listing.");
+        assertEquals(Arrays.asList("z/y/x/"), index.list("z/y"),
+            "Wrong directory listing.");
+        assertEquals(Collections.emptyList(), index.list("a/f/"),
+            "Wrong directory listing.");
+        assertEquals(Collections.emptyList(), index.list("missing/"),
+            "Wrong directory listing.");
+
+        assertEquals(Arrays.asList("a/b-x.txt", "a/b/c.class", "a/b/d.class"),
+            index.listAll("a/b"), "Wrong prefix listing.");
+        assertEquals(Collections.emptyList(), index.listAll("b"), "Wrong prefix listing.");
+    }
+}
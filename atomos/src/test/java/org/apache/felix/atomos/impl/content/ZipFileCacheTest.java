@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.content;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.felix.atomos.impl.content.ConnectContentCloseableJar.ZipFileHolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.framework.connect.ConnectContent;
+import org.osgi.framework.connect.ConnectContent.ConnectEntry;
+
+public class ZipFileCacheTest
+{
+    @Test
+    void testEviction(@TempDir Path dir) throws IOException
+    {
+        File root = dir.toFile();
+        ZipFileCache cache = new ZipFileCache(2);
+        List<ConnectContent> contents = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            String name = "test" + i + ".jar";
+            try (ZipOutputStream out = new ZipOutputStream(
+                new FileOutputStream(new File(root, name))))
+            {
+                out.putNextEntry(new ZipEntry("entry.txt"));
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+            }
+            ConnectContent content = new ConnectContentCloseableJar(name,
+                () -> root, cache, Optional::empty);
+            content.open();
+            contents.add(content);
+        }
+        assertEquals(3, cache.getOpens(), "Wrong number of opens.");
+        assertEquals(1, cache.getEvictions(), "Wrong number of evictions.");
+        assertEquals(2, cache.getOpenCount(), "Wrong number of open files.");
+
+        // an open stream keeps its file open
+        ConnectEntry entry = contents.get(2).getEntry("entry.txt").get();
+        try (InputStream in = entry.getInputStream())
+        {
+            // the evicted file is opened again and evicts another file
+            assertEquals("test0.jar", read(contents.get(0)), "Wrong content.");
+            assertEquals("test1.jar", read(contents.get(1)), "Wrong content.");
+            assertEquals("test2.jar",
+                new String(in.readAllBytes(), StandardCharsets.UTF_8), "Wrong content.");
+        }
+        assertTrue(cache.getEvictions() >= 3, "Wrong number of evictions.");
+        assertTrue(cache.getHits() > 0, "No hits.");
+
+        for (ConnectContent content : contents)
+        {
+            content.close();
+        }
+        assertEquals(0, cache.getOpenCount(), "Wrong number of open files.");
+    }
+
+    @Test
+    void testEvictionPinned(@TempDir Path dir) throws IOException
+    {
+        File root = dir.toFile();
+        ZipFileCache cache = new ZipFileCache(1);
+        List<ZipFileHolder> holders = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+        {
+            String name = "test" + i + ".jar";
+            try (ZipOutputStream out = new ZipOutputStream(
+                new FileOutputStream(new File(root, name))))
+            {
+                out.putNextEntry(new ZipEntry("entry.txt"));
+            }
+            // pinned after the eviction checked whether it is in use
+            holders.add(new ZipFileHolder(name, () -> root, cache)
+            {
+                @Override
+                boolean isInUse()
+                {
+                    return false;
+                }
+            });
+        }
+        ZipFileHolder pinned = holders.get(0);
+        pinned.pin();
+        try
+        {
+            holders.get(1).get();
+            long open = holders.stream().filter(ZipFileHolder::isOpen).count();
+            assertTrue(pinned.isOpen(), "Pinned file closed.");
+            assertEquals(1, open, "Too many open files.");
+            assertEquals(open, cache.getOpenCount(), "Wrong number of open files.");
+        }
+        finally
+        {
+            pinned.unpin();
+        }
+        pinned.accept(pinned);
+        holders.get(1).accept(holders.get(1));
+        assertEquals(0, cache.getOpenCount(), "Wrong number of open files.");
+    }
+
+    private static String read(ConnectContent content) throws IOException
+    {
+        try (InputStream in = content.getEntry("entry.txt").get().getInputStream())
+        {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.atomos.impl.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ModuleReaderPoolTest
+{
+    @Test
+    void testSharedReader() throws IOException
+    {
+        ModuleReference reference = ModuleFinder.ofSystem().find("java.base").get();
+        ModuleReaderPool pool = new ModuleReaderPool();
+        ModuleReader reader1 = pool.open(reference);
+        ModuleReader reader2 = pool.open(reference);
+        assertEquals(1, pool.size(), "Wrong number of open modules.");
+        assertTrue(reader1.find("java/lang/Object.class").isPresent(), "No entry found.");
+
+        reader1.close();
+        // closing again has no effect
+        reader1.close();
+        assertEquals(1, pool.size(), "Wrong number of open modules.");
+        assertThrows(IOException.class, () -> reader1.find("java/lang/Object.class"));
+        assertTrue(reader2.find("java/lang/Object.class").isPresent(), "No entry found.");
+
+        reader2.close();
+        assertEquals(0, pool.size(), "Wrong number of open modules.");
+    }
+
+    @Test
+    void testMappedReader(@TempDir Path tmpDir) throws IOException
+    {
+        Path jar = tmpDir.resolve("mapped.jar");
+        byte[] data = "mapped".getBytes(StandardCharsets.UTF_8);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar)))
+        {
+            zip.setMethod(ZipOutputStream.STORED);
+            ZipEntry entry = new ZipEntry("a/entry.txt");
+            entry.setSize(data.length);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(data);
+            zip.closeEntry();
+        }
+        ModuleReference reference = ModuleFinder.of(jar).find("mapped").get();
+        ModuleReaderPool pool = new ModuleReaderPool(true);
+        try (ModuleReader reader = pool.open(reference))
+        {
+            ByteBuffer buffer = reader.read("a/entry.txt").get();
+            assertTrue(buffer.isDirect(), "Entry is not read from the mapping.");
+            assertEquals(data.length, buffer.remaining(), "Wrong entry size.");
+            reader.release(buffer);
+            try (InputStream in = reader.open("a/entry.txt").get())
+            {
+                assertEquals("mapped", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            assertTrue(reader.find("a/entry.txt").isPresent(), "No entry found.");
+            assertTrue(reader.read("a/missing.txt").isEmpty(), "Unexpected entry.");
+            assertEntryMetadata(reference, reader, jar, data.length);
+        }
+        try (ModuleReader reader = new ModuleReaderPool(false).open(reference))
+        {
+            assertEntryMetadata(reference, reader, jar, data.length);
+        }
+    }
+
+    private static void assertEntryMetadata(ModuleReference reference,
+        ModuleReader reader, Path jar, long size) throws IOException
+    {
+        ModuleEntryMetadata metadata = ModuleEntryMetadata.of(reference, reader);
+        // the metadata must not read the entries
+        ModuleReader noReads = new NoReadsModuleReader(reader);
+        long[] sizeAndTime = metadata.get("a/entry.txt", noReads);
+        assertEquals(size, sizeAndTime[0], "Wrong entry size.");
+        assertEquals(Files.getLastModifiedTime(jar).toMillis(), sizeAndTime[1],
+            "Wrong entry time.");
+        assertEquals(-1, metadata.get("a/missing.txt", noReads)[0], "Wrong missing size.");
+    }
+
+    static class NoReadsModuleReader implements ModuleReader
+    {
+        private final ModuleReader reader;
+
+        NoReadsModuleReader(ModuleReader reader)
+        {
+            this.reader = reader;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException
+        {
+            return reader.find(name);
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException
+        {
+            throw new AssertionError("Opened entry: " + name);
+        }
+
+        @Override
+        public Optional<ByteBuffer> read(String name) throws IOException
+        {
+            throw new AssertionError("Read entry: " + name);
+        }
+
+        @Override
+        public Stream<String> list() throws IOException
+        {
+            return reader.list();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            reader.close();
+        }
+    }
+}